@@ -0,0 +1,43 @@
+package ua.yandex.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of {@code benchmarks.jar}. Accepts the usual JMH command line
+ * and, unless told otherwise, writes JSON results to
+ * {@code jmh-result-<label>.json}, where the label comes from the
+ * {@code benchmark.label} system property. Comparing two such files shows
+ * how performance changed between releases.
+ */
+public final class BenchmarkRunner {
+    private static final String DEFAULT_LABEL = "current";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        if (commandLine.shouldList()) {
+            new Runner(commandLine).list();
+            return;
+        }
+        ChainedOptionsBuilder builder =
+                new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            String label = System.getProperty("benchmark.label", DEFAULT_LABEL);
+            builder.result("jmh-result-" + label + ".json");
+        }
+        new Runner(builder.build()).run();
+    }
+}
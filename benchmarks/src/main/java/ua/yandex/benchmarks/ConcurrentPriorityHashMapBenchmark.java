@@ -0,0 +1,154 @@
+package ua.yandex.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.yandex.prioritymap.ConcurrentPriorityHashMap;
+import ua.yandex.prioritymap.PriorityHashMap;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a shared map under a read-mostly mix (80% get, 10% put,
+ * 10% poll and put back). {@code GLOBAL_LOCK} is a {@link PriorityHashMap}
+ * behind one monitor, the setup the concurrent map replaces. Run once per
+ * thread count, e.g. {@code -t 1}, {@code -t 4}, {@code -t max}, to see how
+ * each scales with cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentPriorityHashMapBenchmark {
+    private static final int GET_PERCENT = 80;
+    private static final int PUT_PERCENT = 90;
+    private static final int PERCENT = 100;
+
+    @Param({"CONCURRENT", "GLOBAL_LOCK"})
+    private String implementation;
+
+    @Param({"100000"})
+    private int size;
+
+    private PriorityMapAdapter map;
+
+    @Setup
+    public void setUp() {
+        if ("CONCURRENT".equals(implementation)) {
+            map = new ConcurrentAdapter();
+        } else {
+            map = new GlobalLockAdapter();
+        }
+        for (int key = 0; key < size; key++) {
+            map.put(key, key);
+        }
+    }
+
+    @Benchmark
+    public Integer mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int operation = random.nextInt(PERCENT);
+        Integer key = random.nextInt(size);
+        if (operation < GET_PERCENT) {
+            return map.get(key);
+        }
+        if (operation < PUT_PERCENT) {
+            map.put(key, key);
+            return key;
+        }
+        Integer polled = map.poll();
+        if (polled != null) {
+            map.put(polled, polled);
+        }
+        return polled;
+    }
+
+    private static final class ConcurrentAdapter implements PriorityMapAdapter {
+        private final ConcurrentPriorityHashMap<Integer, Integer> map =
+                new ConcurrentPriorityHashMap<>();
+
+        @Override
+        public Integer get(Integer key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void put(Integer key, Integer value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public Integer remove(Integer key) {
+            return map.remove(key);
+        }
+
+        @Override
+        public Integer poll() {
+            return map.pollValueWithPriorityKey();
+        }
+
+        @Override
+        public Integer peek() {
+            return map.peekValueWithPriorityKey();
+        }
+
+        @Override
+        public long sumEntries() {
+            long sum = 0;
+            for (Integer value : map.values()) {
+                sum += value;
+            }
+            return sum;
+        }
+    }
+
+    private static final class GlobalLockAdapter implements PriorityMapAdapter {
+        private final PriorityHashMap<Integer, Integer> map =
+                new PriorityHashMap<>();
+
+        @Override
+        public synchronized Integer get(Integer key) {
+            return map.get(key);
+        }
+
+        @Override
+        public synchronized void put(Integer key, Integer value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public synchronized Integer remove(Integer key) {
+            return map.remove(key);
+        }
+
+        @Override
+        public synchronized Integer poll() {
+            return map.pollValueWithPriorityKey();
+        }
+
+        @Override
+        public synchronized Integer peek() {
+            return map.peekValueWithPriorityKey();
+        }
+
+        @Override
+        public synchronized long sumEntries() {
+            long sum = 0;
+            for (Integer value : map.values()) {
+                sum += value;
+            }
+            return sum;
+        }
+    }
+}
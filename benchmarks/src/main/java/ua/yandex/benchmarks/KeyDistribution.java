@@ -0,0 +1,50 @@
+package ua.yandex.benchmarks;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Shapes of benchmark keys. {@code CLUSTERED} keys are the indices with their
+ * bits reversed, so that nearby keys differ only in their high bits, which
+ * is what defeats a table that masks hash codes without mixing them first.
+ * Reversal is a bijection, so the keys stay distinct over the whole range.
+ */
+enum KeyDistribution {
+    SEQUENTIAL {
+        @Override
+        int key(int index, Random random) {
+            return index;
+        }
+    },
+    UNIFORM {
+        @Override
+        int key(int index, Random random) {
+            return random.nextInt();
+        }
+    },
+    CLUSTERED {
+        @Override
+        int key(int index, Random random) {
+            return Integer.reverse(index);
+        }
+    };
+
+    abstract int key(int index, Random random);
+
+    Integer[] distinctKeys(int count, Random random) {
+        Set<Integer> seen = new HashSet<>();
+        Integer[] keys = new Integer[count];
+        int index = 0;
+        int candidate = 0;
+        while (index < count) {
+            Integer key = key(candidate, random);
+            candidate++;
+            if (seen.add(key)) {
+                keys[index] = key;
+                index++;
+            }
+        }
+        return keys;
+    }
+}
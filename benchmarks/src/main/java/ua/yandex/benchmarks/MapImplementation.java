@@ -0,0 +1,231 @@
+package ua.yandex.benchmarks;
+
+import ua.yandex.prioritymap.OpenAddressingPriorityHashMap;
+import ua.yandex.prioritymap.PriorityHashMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Maps under comparison. {@code HASH_MAP_AND_PRIORITY_QUEUE} is the usual
+ * hand-rolled alternative: a {@link HashMap} for lookups next to a
+ * {@link PriorityQueue} of keys, whose arbitrary removal is linear.
+ */
+enum MapImplementation {
+    PRIORITY_HASH_MAP {
+        @Override
+        PriorityMapAdapter create(int capacity, float loadFactor) {
+            return new PriorityHashMapAdapter(
+                    new PriorityHashMap<>(capacity, loadFactor));
+        }
+    },
+    OPEN_ADDRESSING {
+        @Override
+        PriorityMapAdapter create(int capacity, float loadFactor) {
+            return new OpenAddressingAdapter(
+                    new OpenAddressingPriorityHashMap<>(capacity, loadFactor));
+        }
+    },
+    HASH_MAP_AND_PRIORITY_QUEUE {
+        @Override
+        PriorityMapAdapter create(int capacity, float loadFactor) {
+            return new HashMapAndQueueAdapter(capacity, loadFactor);
+        }
+    },
+    TREE_MAP {
+        @Override
+        PriorityMapAdapter create(int capacity, float loadFactor) {
+            return new TreeMapAdapter();
+        }
+    };
+
+    abstract PriorityMapAdapter create(int capacity, float loadFactor);
+
+    private static long sumValues(Map<Integer, Integer> map) {
+        long sum = 0;
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            sum += entry.getValue();
+        }
+        return sum;
+    }
+
+    private static final class PriorityHashMapAdapter
+            implements PriorityMapAdapter {
+        private final PriorityHashMap<Integer, Integer> map;
+
+        private PriorityHashMapAdapter(PriorityHashMap<Integer, Integer> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Integer get(Integer key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void put(Integer key, Integer value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public Integer remove(Integer key) {
+            return map.remove(key);
+        }
+
+        @Override
+        public Integer poll() {
+            return map.pollValueWithPriorityKey();
+        }
+
+        @Override
+        public Integer peek() {
+            return map.peekValueWithPriorityKey();
+        }
+
+        @Override
+        public long sumEntries() {
+            return sumValues(map);
+        }
+    }
+
+    private static final class OpenAddressingAdapter
+            implements PriorityMapAdapter {
+        private final OpenAddressingPriorityHashMap<Integer, Integer> map;
+
+        private OpenAddressingAdapter(
+                OpenAddressingPriorityHashMap<Integer, Integer> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Integer get(Integer key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void put(Integer key, Integer value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public Integer remove(Integer key) {
+            return map.remove(key);
+        }
+
+        @Override
+        public Integer poll() {
+            return map.pollValueWithPriorityKey();
+        }
+
+        @Override
+        public Integer peek() {
+            return map.peekValueWithPriorityKey();
+        }
+
+        @Override
+        public long sumEntries() {
+            return sumValues(map);
+        }
+    }
+
+    private static final class HashMapAndQueueAdapter
+            implements PriorityMapAdapter {
+        private final Map<Integer, Integer> map;
+        private final PriorityQueue<Integer> queue;
+
+        private HashMapAndQueueAdapter(int capacity, float loadFactor) {
+            map = new HashMap<>(capacity, loadFactor);
+            queue = new PriorityQueue<>(Math.max(1, capacity),
+                    Collections.reverseOrder());
+        }
+
+        @Override
+        public Integer get(Integer key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void put(Integer key, Integer value) {
+            if (map.put(key, value) == null) {
+                queue.add(key);
+            }
+        }
+
+        @Override
+        public Integer remove(Integer key) {
+            Integer value = map.remove(key);
+            if (value != null) {
+                queue.remove(key);
+            }
+            return value;
+        }
+
+        @Override
+        public Integer poll() {
+            Integer key = queue.poll();
+            if (key == null) {
+                return null;
+            }
+            return map.remove(key);
+        }
+
+        @Override
+        public Integer peek() {
+            Integer key = queue.peek();
+            if (key == null) {
+                return null;
+            }
+            return map.get(key);
+        }
+
+        @Override
+        public long sumEntries() {
+            return sumValues(map);
+        }
+    }
+
+    private static final class TreeMapAdapter implements PriorityMapAdapter {
+        private final TreeMap<Integer, Integer> map = new TreeMap<>();
+
+        @Override
+        public Integer get(Integer key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void put(Integer key, Integer value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public Integer remove(Integer key) {
+            return map.remove(key);
+        }
+
+        @Override
+        public Integer poll() {
+            Map.Entry<Integer, Integer> entry = map.pollLastEntry();
+            if (entry == null) {
+                return null;
+            }
+            return entry.getValue();
+        }
+
+        @Override
+        public Integer peek() {
+            Map.Entry<Integer, Integer> entry = map.lastEntry();
+            if (entry == null) {
+                return null;
+            }
+            return entry.getValue();
+        }
+
+        @Override
+        public long sumEntries() {
+            return sumValues(map);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package ua.yandex.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded operation costs of the priority maps against
+ * {@code HashMap} + {@code PriorityQueue} and {@code TreeMap}.
+ *
+ * <p>The full parameter matrix is large; narrow it with {@code -p}, e.g.
+ * {@code -p size=100000 -p loadFactor=0.75}. Run {@link #fill()} with
+ * {@code -prof gc} and divide {@code gc.alloc.rate.norm} by {@code size} to
+ * get the bytes each implementation spends per entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriorityHashMapBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"PRIORITY_HASH_MAP", "OPEN_ADDRESSING",
+            "HASH_MAP_AND_PRIORITY_QUEUE", "TREE_MAP"})
+    private MapImplementation implementation;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"UNIFORM", "SEQUENTIAL", "CLUSTERED"})
+    private KeyDistribution distribution;
+
+    @Param({"0.5", "0.75", "0.9"})
+    private float loadFactor;
+
+    private Integer[] keys;
+    private Integer[] missingKeys;
+    private PriorityMapAdapter map;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(SEED);
+        Integer[] allKeys = distribution.distinctKeys(2 * size, random);
+        keys = new Integer[size];
+        missingKeys = new Integer[size];
+        System.arraycopy(allKeys, 0, keys, 0, size);
+        System.arraycopy(allKeys, size, missingKeys, 0, size);
+        map = fill();
+    }
+
+    private int nextIndex() {
+        cursor++;
+        if (cursor == size) {
+            cursor = 0;
+        }
+        return cursor;
+    }
+
+    @Benchmark
+    public PriorityMapAdapter fill() {
+        PriorityMapAdapter filled = implementation.create(0, loadFactor);
+        for (Integer key : keys) {
+            filled.put(key, key);
+        }
+        return filled;
+    }
+
+    @Benchmark
+    public Integer getHit() {
+        return map.get(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Integer getMiss() {
+        return map.get(missingKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public void putExisting() {
+        Integer key = keys[nextIndex()];
+        map.put(key, key);
+    }
+
+    @Benchmark
+    public void removeAndPut() {
+        Integer key = keys[nextIndex()];
+        map.remove(key);
+        map.put(key, key);
+    }
+
+    @Benchmark
+    public void pollAndPut() {
+        Integer key = map.poll();
+        map.put(key, key);
+    }
+
+    @Benchmark
+    public Integer peek() {
+        return map.peek();
+    }
+
+    @Benchmark
+    public long iterateEntries() {
+        return map.sumEntries();
+    }
+}
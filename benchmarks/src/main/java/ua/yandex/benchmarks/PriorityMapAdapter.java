@@ -0,0 +1,20 @@
+package ua.yandex.benchmarks;
+
+/**
+ * The operations the benchmarks compare, over {@code Integer} keys and
+ * values. Every benchmarked map stores each key as its own value, so a
+ * polled value can be put back as a key.
+ */
+interface PriorityMapAdapter {
+    Integer get(Integer key);
+
+    void put(Integer key, Integer value);
+
+    Integer remove(Integer key);
+
+    Integer poll();
+
+    Integer peek();
+
+    long sumEntries();
+}
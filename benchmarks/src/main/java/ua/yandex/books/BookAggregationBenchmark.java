@@ -0,0 +1,102 @@
+package ua.yandex.books;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.yandex.tuple.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The static {@link Book} aggregations over a synthetic catalog. Each book
+ * has one to three authors drawn from {@code authorCount} names, a random
+ * topic and a year in {@code [FIRST_YEAR, FIRST_YEAR + YEARS)}. Lives in the
+ * books package because {@link Topic} is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookAggregationBenchmark {
+    private static final long SEED = 42;
+    private static final int FIRST_YEAR = 1900;
+    private static final int YEARS = 120;
+    private static final int MAX_AUTHORS = 3;
+
+    @Param({"10000", "1000000"})
+    private int catalogSize;
+
+    @Param({"1000", "100000"})
+    private int authorCount;
+
+    private List<Book> books;
+    private BookStore store;
+
+    static List<Book> generateCatalog(int catalogSize, int authorCount,
+                                      Random random) {
+        Topic[] topics = Topic.values();
+        List<Book> catalog = new ArrayList<>(catalogSize);
+        for (int index = 0; index < catalogSize; index++) {
+            int authorsOfBook = 1 + random.nextInt(MAX_AUTHORS);
+            List<String> authors = new ArrayList<>(authorsOfBook);
+            for (int author = 0; author < authorsOfBook; author++) {
+                authors.add("Author " + random.nextInt(authorCount));
+            }
+            catalog.add(new Book(authors, "Title " + index,
+                    topics[random.nextInt(topics.length)],
+                    FIRST_YEAR + random.nextInt(YEARS)));
+        }
+        return catalog;
+    }
+
+    @Setup
+    public void setUp() {
+        books = generateCatalog(catalogSize, authorCount, new Random(SEED));
+        store = new BookStore(books);
+    }
+
+    @Benchmark
+    public Map<String, List<Book>> groupBooksByAuthors() {
+        return Book.groupBooksByAuthors(books);
+    }
+
+    @Benchmark
+    public Map<Integer, Set<String>> findTopAuthorsPerEachYear() {
+        return Book.findTopAuthorsPerEachYear(books);
+    }
+
+    @Benchmark
+    public Set<Tuple<Topic, List<String>>> findTopicsWithMostBooks() {
+        return Book.findTopicsWithTheMostNumberOfBooks(books);
+    }
+
+    @Benchmark
+    public Map<String, List<Book>> storeGroupBooksByAuthors() {
+        return store.groupBooksByAuthors();
+    }
+
+    @Benchmark
+    public Map<Integer, Set<String>> storeFindTopAuthorsPerEachYear() {
+        return store.findTopAuthorsPerEachYear();
+    }
+
+    @Benchmark
+    public Set<Tuple<Topic, List<String>>> storeFindTopicsWithMostBooks() {
+        return store.findTopicsWithTheMostNumberOfBooks();
+    }
+}
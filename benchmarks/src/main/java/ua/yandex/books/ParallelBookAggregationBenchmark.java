@@ -0,0 +1,82 @@
+package ua.yandex.books;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.yandex.tuple.Tuple;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The parallel {@link Book} aggregations over the catalog of
+ * {@link BookAggregationBenchmark}, run inside a fork-join pool of
+ * {@code parallelism} workers so that the speedup over the sequential
+ * benchmark can be read per core count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelBookAggregationBenchmark {
+    private static final long SEED = 42;
+    private static final long PARALLELISM_THRESHOLD = 8192;
+
+    @Param({"1000000"})
+    private int catalogSize;
+
+    @Param({"100000"})
+    private int authorCount;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    private int parallelism;
+
+    private List<Book> books;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        books = BookAggregationBenchmark.generateCatalog(catalogSize,
+                authorCount, new Random(SEED));
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Map<String, List<Book>> groupBooksByAuthors() {
+        return pool.submit(() -> Book.groupBooksByAuthors(books,
+                PARALLELISM_THRESHOLD)).join();
+    }
+
+    @Benchmark
+    public Map<Integer, Set<String>> findTopAuthorsPerEachYear() {
+        return pool.submit(() -> Book.findTopAuthorsPerEachYear(books,
+                PARALLELISM_THRESHOLD)).join();
+    }
+
+    @Benchmark
+    public Set<Tuple<Topic, List<String>>> findTopicsWithMostBooks() {
+        return pool.submit(() -> Book.findTopicsWithTheMostNumberOfBooks(
+                books, PARALLELISM_THRESHOLD)).join();
+    }
+}
@@ -4,10 +4,12 @@ import ua.yandex.tuple.Tuple;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
 
 public class Book {
     private String title;
@@ -23,103 +25,183 @@ public class Book {
         this.yearOfPublishing = yearOfPublishing;
     }
 
+    String getTitle() {
+        return title;
+    }
+
+    List<String> getAuthors() {
+        return authors;
+    }
+
+    int getYearOfPublishing() {
+        return yearOfPublishing;
+    }
+
+    Topic getTopic() {
+        return topic;
+    }
+
     public static Map<String, List<Book>> groupBooksByAuthors(
             List<Book> books) {
         Map<String, List<Book>> groupedBooks = new HashMap<>();
         for (Book book : books) {
-            for (String author : book.authors) {
-                List<Book> booksByAuthor = groupedBooks.get(author);
-                if (booksByAuthor == null) {
-                    booksByAuthor = new ArrayList<>();
-                    groupedBooks.put(author, booksByAuthor);
-                }
-                booksByAuthor.add(book);
-            }
+            groupByAuthors(groupedBooks, book);
         }
         return  groupedBooks;
     }
 
+    /**
+     * Adds {@code book} to the groups of its authors. The list aggregations
+     * and {@link CatalogAggregator} accumulate books one at a time through
+     * this and {@link #countAuthors(Map, Book)}.
+     */
+    static void groupByAuthors(Map<String, List<Book>> groupedBooks,
+                               Book book) {
+        for (String author : book.authors) {
+            List<Book> booksByAuthor = groupedBooks.get(author);
+            if (booksByAuthor == null) {
+                booksByAuthor = new ArrayList<>();
+                groupedBooks.put(author, booksByAuthor);
+            }
+            booksByAuthor.add(book);
+        }
+    }
+
+    /**
+     * Parallel form of {@link #groupBooksByAuthors(List)} with the same
+     * result, every author's books in catalog order. The catalog is split
+     * on the common fork-join pool once it holds more than
+     * {@code parallelismThreshold} books; a threshold of
+     * {@link Long#MAX_VALUE} keeps the work sequential. The catalog must not
+     * be modified while the aggregation runs.
+     */
+    public static Map<String, List<Book>> groupBooksByAuthors(
+            List<Book> books, long parallelismThreshold) {
+        return aggregate(books, parallelismThreshold,
+                part -> groupBooksByAuthors(part), Book::mergeGroups);
+    }
+
     public static Map<Integer, Set<String>> findTopAuthorsPerEachYear(
             List<Book> books) {
-        Map<Integer, Set<String>> topAuthorsPerYear = new HashMap<>();
-        Map<Integer, Map<String, Integer>> allAuthorsFrequencyPerYear =
+        return findTopAuthorsPerYear(countAuthorsPerYear(books));
+    }
+
+    /**
+     * Parallel form of {@link #findTopAuthorsPerEachYear(List)}, splitting
+     * the catalog as {@link #groupBooksByAuthors(List, long)} does.
+     */
+    public static Map<Integer, Set<String>> findTopAuthorsPerEachYear(
+            List<Book> books, long parallelismThreshold) {
+        return findTopAuthorsPerYear(aggregate(books, parallelismThreshold,
+                Book::countAuthorsPerYear, Book::mergeCounts));
+    }
+
+    private static Map<Integer, FrequencyCounter<String>>
+            countAuthorsPerYear(List<Book> books) {
+        Map<Integer, FrequencyCounter<String>> allAuthorsFrequencyPerYear =
                 new HashMap<>();
         for (Book book : books) {
-            int booksYear = book.yearOfPublishing;
-            Map<String, Integer> authorsFrequencies =
-                    allAuthorsFrequencyPerYear.get(booksYear);
-            if (authorsFrequencies == null) {
-                authorsFrequencies = new HashMap<>();
-                allAuthorsFrequencyPerYear.put(booksYear, authorsFrequencies);
-            }
-            for (int authorIndex = 0;
-                 authorIndex < book.authors.size(); authorIndex++) {
-                String author = book.authors.get(authorIndex);
-                int frequency;
-                if (authorsFrequencies.get(author) != null) {
-                    frequency = authorsFrequencies.get(author) + 1;
-
-                } else {
-                    frequency = 1;
-                }
-                authorsFrequencies.put(author, frequency);
-            }
+            countAuthors(allAuthorsFrequencyPerYear, book);
+        }
+        return allAuthorsFrequencyPerYear;
+    }
+
+    /**
+     * Counts the authors of {@code book} in the counter of its year. Only
+     * the lookup of the year boxes; the author counts are incremented in
+     * place.
+     */
+    static void countAuthors(
+            Map<Integer, FrequencyCounter<String>> allAuthorsFrequencyPerYear,
+            Book book) {
+        FrequencyCounter<String> authorsFrequencies =
+                allAuthorsFrequencyPerYear.get(book.yearOfPublishing);
+        if (authorsFrequencies == null) {
+            authorsFrequencies = new FrequencyCounter<>();
+            allAuthorsFrequencyPerYear.put(book.yearOfPublishing,
+                    authorsFrequencies);
         }
-        Set<Integer> years = allAuthorsFrequencyPerYear.keySet();
-        for (int year : years) {
-            Map<String, Integer> authorsFrequencies =
-                    allAuthorsFrequencyPerYear.get(year);
-            topAuthorsPerYear.put(year, findTopAuthors(authorsFrequencies));
+        for (String author : book.authors) {
+            authorsFrequencies.increment(author);
         }
-        return topAuthorsPerYear;
     }
 
-    private static Set<String> findTopAuthors(
-            Map<String, Integer> authorsFrequencies) {
-        Set<String> topAuthors = new HashSet<>();
-        int maxFrequency = 0;
-        for (String author : authorsFrequencies.keySet()) {
-            int frequency = authorsFrequencies.get(author);
-            if (frequency == maxFrequency) {
-                topAuthors.add(author);
-            } else if (frequency > maxFrequency) {
-                topAuthors.clear();
-                topAuthors.add(author);
-                maxFrequency = frequency;
-            }
+    static Map<Integer, Set<String>> findTopAuthorsPerYear(
+            Map<Integer, FrequencyCounter<String>>
+                    allAuthorsFrequencyPerYear) {
+        Map<Integer, Set<String>> topAuthorsPerYear = new HashMap<>();
+        for (Map.Entry<Integer, FrequencyCounter<String>> entry
+                : allAuthorsFrequencyPerYear.entrySet()) {
+            topAuthorsPerYear.put(entry.getKey(),
+                    entry.getValue().mostFrequent());
         }
-        return topAuthors;
+        return topAuthorsPerYear;
     }
 
     public static Set<Tuple<Topic,
             List<String>>> findTopicsWithTheMostNumberOfBooks(
                 List<Book> books) {
-        Map<Topic, List<String>> booksByTopic = new HashMap<>();
+        return groupTitlesByTopic(books).findTopTopics();
+    }
+
+    /**
+     * Parallel form of {@link #findTopicsWithTheMostNumberOfBooks(List)},
+     * splitting the catalog as {@link #groupBooksByAuthors(List, long)}
+     * does. Titles keep their catalog order.
+     */
+    public static Set<Tuple<Topic,
+            List<String>>> findTopicsWithTheMostNumberOfBooks(
+                List<Book> books, long parallelismThreshold) {
+        return aggregate(books, parallelismThreshold,
+                Book::groupTitlesByTopic, TopicTitles::addAll)
+                .findTopTopics();
+    }
+
+    private static TopicTitles groupTitlesByTopic(List<Book> books) {
+        TopicTitles booksByTopic = new TopicTitles();
         for (Book book : books) {
-            List<String> booksNames = booksByTopic.get(book.topic);
-            if (booksNames == null) {
-                booksNames = new ArrayList<>();
-                booksByTopic.put(book.topic, booksNames);
-            }
-            booksNames.add(book.title);
+            booksByTopic.add(book.topic, book.title);
         }
-        int maxBooksNumber = 0;
-        Set<Tuple<Topic, List<String>>> topTopics = new HashSet<>();
-        for (Topic topic : booksByTopic.keySet()) {
-            List<String> booksNames = booksByTopic.get(topic);
-            if (booksNames.size() > maxBooksNumber) {
-                topTopics.clear();
-                Tuple<Topic, List<String>> nextTuple =
-                        new Tuple<>(topic, booksNames);
-                topTopics.add(nextTuple);
-                maxBooksNumber = booksNames.size();
-            } else if (booksNames.size() == maxBooksNumber) {
-                Tuple<Topic, List<String>> nextTuple =
-                        new Tuple<>(topic, booksNames);
-                topTopics.add(nextTuple);
-            }
+        return booksByTopic;
+    }
+
+    private static <R> R aggregate(List<Book> books,
+                                   long parallelismThreshold,
+                                   Function<List<Book>, R> aggregator,
+                                   BinaryOperator<R> merger) {
+        List<Book> catalog = books;
+        if (!(catalog instanceof RandomAccess)) {
+            catalog = new ArrayList<>(books);
+        }
+        return new BookAggregationTask<>(catalog, parallelismThreshold, 0,
+                catalog.size(), aggregator, merger).invoke();
+    }
+
+    /**
+     * Appends the groups of {@code second} to those of {@code first}, which
+     * holds the earlier part of the catalog, and returns {@code first}.
+     */
+    private static <G, T> Map<G, List<T>> mergeGroups(
+            Map<G, List<T>> first, Map<G, List<T>> second) {
+        for (Map.Entry<G, List<T>> entry : second.entrySet()) {
+            first.merge(entry.getKey(), entry.getValue(),
+                    (firstGroup, secondGroup) -> {
+                        firstGroup.addAll(secondGroup);
+                        return firstGroup;
+                    });
+        }
+        return first;
+    }
+
+    private static Map<Integer, FrequencyCounter<String>> mergeCounts(
+            Map<Integer, FrequencyCounter<String>> first,
+            Map<Integer, FrequencyCounter<String>> second) {
+        for (Map.Entry<Integer, FrequencyCounter<String>> entry
+                : second.entrySet()) {
+            first.merge(entry.getKey(), entry.getValue(),
+                    FrequencyCounter::addAll);
         }
-        return topTopics;
+        return first;
     }
 
     @Override
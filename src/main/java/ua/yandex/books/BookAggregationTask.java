@@ -0,0 +1,50 @@
+package ua.yandex.books;
+
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Fork-join task behind the parallel aggregations of {@link Book}. It halves
+ * its range of the catalog until the range holds no more than the
+ * parallelism threshold, aggregates every leaf sequentially into a partial
+ * result and merges the partial results pairwise on the way back up. The
+ * prefix is always merged with the suffix in that order, so results that
+ * keep the catalog order come out as from a sequential pass.
+ */
+final class BookAggregationTask<R> extends RecursiveTask<R> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Book> books;
+    private final long threshold;
+    private final int origin;
+    private final int fence;
+    private final Function<List<Book>, R> aggregator;
+    private final BinaryOperator<R> merger;
+
+    BookAggregationTask(List<Book> books, long threshold, int origin,
+                        int fence, Function<List<Book>, R> aggregator,
+                        BinaryOperator<R> merger) {
+        this.books = books;
+        this.threshold = Math.max(1, threshold);
+        this.origin = origin;
+        this.fence = fence;
+        this.aggregator = aggregator;
+        this.merger = merger;
+    }
+
+    @Override
+    protected R compute() {
+        if (fence - origin > threshold) {
+            int middle = (origin + fence) >>> 1;
+            BookAggregationTask<R> prefix = new BookAggregationTask<>(books,
+                    threshold, origin, middle, aggregator, merger);
+            prefix.fork();
+            R suffixResult = new BookAggregationTask<>(books, threshold,
+                    middle, fence, aggregator, merger).compute();
+            return merger.apply(prefix.join(), suffixResult);
+        }
+        return aggregator.apply(books.subList(origin, fence));
+    }
+}
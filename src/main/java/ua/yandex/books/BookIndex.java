@@ -0,0 +1,230 @@
+package ua.yandex.books;
+
+import ua.yandex.tuple.Tuple;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Catalog index that keeps the results of the {@link Book} aggregations up
+ * to date as books are added and removed, instead of rebuilding them from
+ * the whole catalog on every query. Adding or removing a book costs
+ * O(number of its authors); each query costs O(size of its result).
+ *
+ * <p>Books are told apart by identity, and a book can be indexed only once.
+ * An author listed twice in one book still groups that book once. The
+ * index is not thread-safe.
+ */
+public class BookIndex {
+    private final Set<Book> books = new HashSet<>();
+    private final Map<String, Set<Book>> booksByAuthor = new HashMap<>();
+    private final Map<Integer, AuthorCounts> authorCountsByYear =
+            new HashMap<>();
+    private final Map<Topic, Set<Book>> booksByTopic = new HashMap<>();
+
+    public BookIndex() {
+    }
+
+    public BookIndex(List<Book> catalog) {
+        for (Book book : catalog) {
+            add(book);
+        }
+    }
+
+    /**
+     * Author frequencies of one year, with the authors bucketed by their
+     * frequency so that the most frequent ones are known at all times.
+     * Frequencies change by one at a time, so the maximum moves by at most
+     * one as well.
+     */
+    private static final class AuthorCounts {
+        private final Map<String, Integer> frequencies = new HashMap<>();
+        private final Map<Integer, Set<String>> authorsByFrequency =
+                new HashMap<>();
+        private int maxFrequency;
+        private int books;
+
+        private void increment(String author) {
+            int frequency = frequencies.getOrDefault(author, 0);
+            move(author, frequency, frequency + 1);
+            maxFrequency = Math.max(maxFrequency, frequency + 1);
+        }
+
+        private void decrement(String author) {
+            int frequency = frequencies.get(author);
+            move(author, frequency, frequency - 1);
+            if (frequency == maxFrequency
+                    && !authorsByFrequency.containsKey(frequency)) {
+                maxFrequency--;
+            }
+        }
+
+        private void move(String author, int oldFrequency, int newFrequency) {
+            Set<String> oldBucket = authorsByFrequency.get(oldFrequency);
+            if (oldBucket != null) {
+                oldBucket.remove(author);
+                if (oldBucket.isEmpty()) {
+                    authorsByFrequency.remove(oldFrequency);
+                }
+            }
+            if (newFrequency == 0) {
+                frequencies.remove(author);
+                return;
+            }
+            frequencies.put(author, newFrequency);
+            authorsByFrequency.computeIfAbsent(newFrequency,
+                    frequency -> new HashSet<>()).add(author);
+        }
+
+        private Set<String> topAuthors() {
+            Set<String> topAuthors =
+                    authorsByFrequency.get(maxFrequency);
+            if (topAuthors == null) {
+                return new HashSet<>();
+            }
+            return new HashSet<>(topAuthors);
+        }
+    }
+
+    public int size() {
+        return books.size();
+    }
+
+    public boolean contains(Book book) {
+        return books.contains(book);
+    }
+
+    public void add(Book book) {
+        if (!books.add(book)) {
+            throw new IllegalArgumentException("Book is already indexed.");
+        }
+        AuthorCounts counts = authorCountsByYear.computeIfAbsent(
+                book.getYearOfPublishing(), year -> new AuthorCounts());
+        counts.books++;
+        for (String author : book.getAuthors()) {
+            booksByAuthor.computeIfAbsent(author,
+                    name -> new LinkedHashSet<>()).add(book);
+            counts.increment(author);
+        }
+        booksByTopic.computeIfAbsent(book.getTopic(),
+                topic -> new LinkedHashSet<>()).add(book);
+    }
+
+    /**
+     * Removes {@code book} from the index and returns whether it was there.
+     */
+    public boolean remove(Book book) {
+        if (!books.remove(book)) {
+            return false;
+        }
+        int year = book.getYearOfPublishing();
+        AuthorCounts counts = authorCountsByYear.get(year);
+        for (String author : book.getAuthors()) {
+            removeFromGroup(booksByAuthor, author, book);
+            counts.decrement(author);
+        }
+        counts.books--;
+        if (counts.books == 0) {
+            authorCountsByYear.remove(year);
+        }
+        removeFromGroup(booksByTopic, book.getTopic(), book);
+        return true;
+    }
+
+    /**
+     * Replaces {@code oldBook}, which must be indexed, with
+     * {@code newBook}.
+     */
+    public void update(Book oldBook, Book newBook) {
+        if (!contains(oldBook)) {
+            throw new IllegalArgumentException("Book is not indexed.");
+        }
+        if (oldBook != newBook && contains(newBook)) {
+            throw new IllegalArgumentException("Book is already indexed.");
+        }
+        remove(oldBook);
+        add(newBook);
+    }
+
+    private static <G> void removeFromGroup(Map<G, Set<Book>> groups,
+                                            G group, Book book) {
+        Set<Book> groupBooks = groups.get(group);
+        if (groupBooks == null) {
+            return;
+        }
+        groupBooks.remove(book);
+        if (groupBooks.isEmpty()) {
+            groups.remove(group);
+        }
+    }
+
+    /**
+     * Groups the indexed books by author, every author's books in the order
+     * they were added. This matches {@link Book#groupBooksByAuthors(List)}
+     * except for a book that lists the same author more than once: the
+     * index groups it once, while {@code Book} adds it once per listing.
+     */
+    public Map<String, List<Book>> groupBooksByAuthors() {
+        Map<String, List<Book>> groupedBooks = new HashMap<>();
+        for (Map.Entry<String, Set<Book>> entry : booksByAuthor.entrySet()) {
+            groupedBooks.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        return groupedBooks;
+    }
+
+    /**
+     * Same result as {@link Book#findTopAuthorsPerEachYear(List)} over the
+     * indexed books.
+     */
+    public Map<Integer, Set<String>> findTopAuthorsPerEachYear() {
+        Map<Integer, Set<String>> topAuthorsPerYear = new HashMap<>();
+        for (Map.Entry<Integer, AuthorCounts> entry
+                : authorCountsByYear.entrySet()) {
+            topAuthorsPerYear.put(entry.getKey(),
+                    entry.getValue().topAuthors());
+        }
+        return topAuthorsPerYear;
+    }
+
+    /**
+     * Same result as {@link Book#findTopicsWithTheMostNumberOfBooks(List)}
+     * over the indexed books. There are only a handful of topics, so their
+     * maximum is found when asked.
+     */
+    public Set<Tuple<Topic,
+            List<String>>> findTopicsWithTheMostNumberOfBooks() {
+        int maxBooksNumber = 0;
+        for (Set<Book> topicBooks : booksByTopic.values()) {
+            maxBooksNumber = Math.max(maxBooksNumber, topicBooks.size());
+        }
+        Set<Tuple<Topic, List<String>>> topTopics = new HashSet<>();
+        for (Map.Entry<Topic, Set<Book>> entry : booksByTopic.entrySet()) {
+            if (entry.getValue().size() == maxBooksNumber) {
+                topTopics.add(new Tuple<>(entry.getKey(),
+                        titlesOf(entry.getValue())));
+            }
+        }
+        return topTopics;
+    }
+
+    private static List<String> titlesOf(Set<Book> topicBooks) {
+        List<String> titles = new ArrayList<>(topicBooks.size());
+        for (Book book : topicBooks) {
+            titles.add(book.getTitle());
+        }
+        return titles;
+    }
+
+    /**
+     * Returns the indexed books in no particular order.
+     */
+    public Set<Book> getBooks() {
+        return Collections.unmodifiableSet(books);
+    }
+}
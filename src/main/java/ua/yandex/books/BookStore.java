@@ -0,0 +1,273 @@
+package ua.yandex.books;
+
+import ua.yandex.tuple.Tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Column-oriented catalog. Every author name is stored once and referred to
+ * by an int id, years are kept in an {@code int[]}, topics as ordinals in a
+ * {@code byte[]}, and the authors of all books in one {@code int[]} of ids
+ * with an {@code int[]} of offsets into it, book {@code i} owning the ids
+ * from {@code authorOffsets[i]} to {@code authorOffsets[i + 1]}.
+ *
+ * <p>The aggregations run over the ids and ordinals with counting arrays
+ * and turn them back into strings and books only when they build their
+ * result, which equals what the static method of {@link Book} of the same
+ * name returns for the books in store order. Books are rebuilt from the
+ * columns, so the grouped books are new instances, one per stored book.
+ */
+public class BookStore {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final byte NO_TOPIC = -1;
+    private static final Topic[] TOPICS = Topic.values();
+
+    private final Map<String, Integer> authorIdsByName = new HashMap<>();
+    private String[] authorNames = new String[DEFAULT_CAPACITY];
+    private String[] titles = new String[DEFAULT_CAPACITY];
+    private int[] years = new int[DEFAULT_CAPACITY];
+    private byte[] topics = new byte[DEFAULT_CAPACITY];
+    private int[] authorOffsets = new int[DEFAULT_CAPACITY + 1];
+    private int[] authorIds = new int[DEFAULT_CAPACITY];
+    private int size;
+
+    public BookStore() {
+    }
+
+    public BookStore(List<Book> books) {
+        for (Book book : books) {
+            add(book);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of distinct authors in the store.
+     */
+    public int authorCount() {
+        return authorIdsByName.size();
+    }
+
+    /**
+     * Appends the columns of {@code book}.
+     */
+    public void add(Book book) {
+        if (size == titles.length) {
+            int capacity = 2 * size;
+            titles = Arrays.copyOf(titles, capacity);
+            years = Arrays.copyOf(years, capacity);
+            topics = Arrays.copyOf(topics, capacity);
+            authorOffsets = Arrays.copyOf(authorOffsets, capacity + 1);
+        }
+        titles[size] = book.getTitle();
+        years[size] = book.getYearOfPublishing();
+        topics[size] = encodeTopic(book.getTopic());
+        int offset = authorOffsets[size];
+        List<String> authors = book.getAuthors();
+        if (offset + authors.size() > authorIds.length) {
+            authorIds = Arrays.copyOf(authorIds,
+                    Math.max(2 * authorIds.length, offset + authors.size()));
+        }
+        for (String author : authors) {
+            authorIds[offset] = internAuthor(author);
+            offset++;
+        }
+        size++;
+        authorOffsets[size] = offset;
+    }
+
+    private int internAuthor(String author) {
+        Integer authorId = authorIdsByName.get(author);
+        if (authorId != null) {
+            return authorId;
+        }
+        int newId = authorIdsByName.size();
+        if (newId == authorNames.length) {
+            authorNames = Arrays.copyOf(authorNames, 2 * newId);
+        }
+        authorNames[newId] = author;
+        authorIdsByName.put(author, newId);
+        return newId;
+    }
+
+    private static byte encodeTopic(Topic topic) {
+        if (topic == null) {
+            return NO_TOPIC;
+        }
+        return (byte) topic.ordinal();
+    }
+
+    private static Topic decodeTopic(byte topic) {
+        if (topic == NO_TOPIC) {
+            return null;
+        }
+        return TOPICS[topic];
+    }
+
+    /**
+     * Rebuilds the book at {@code index} from the columns.
+     */
+    public Book getBook(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index
+                    + ", Size: " + size);
+        }
+        List<String> authors = new ArrayList<>(
+                authorOffsets[index + 1] - authorOffsets[index]);
+        for (int offset = authorOffsets[index];
+             offset < authorOffsets[index + 1]; offset++) {
+            authors.add(authorNames[authorIds[offset]]);
+        }
+        return new Book(authors, titles[index], decodeTopic(topics[index]),
+                years[index]);
+    }
+
+    public Map<String, List<Book>> groupBooksByAuthors() {
+        int authorCount = authorCount();
+        int[] groupStarts = new int[authorCount + 1];
+        int authorsTotal = authorOffsets[size];
+        for (int offset = 0; offset < authorsTotal; offset++) {
+            groupStarts[authorIds[offset] + 1]++;
+        }
+        for (int authorId = 0; authorId < authorCount; authorId++) {
+            groupStarts[authorId + 1] += groupStarts[authorId];
+        }
+        int[] groupedRows = new int[authorsTotal];
+        int[] nextPositions = Arrays.copyOf(groupStarts, authorCount);
+        for (int row = 0; row < size; row++) {
+            for (int offset = authorOffsets[row];
+                 offset < authorOffsets[row + 1]; offset++) {
+                groupedRows[nextPositions[authorIds[offset]]++] = row;
+            }
+        }
+        Book[] decodedBooks = new Book[size];
+        Map<String, List<Book>> groupedBooks = new HashMap<>();
+        for (int authorId = 0; authorId < authorCount; authorId++) {
+            List<Book> booksByAuthor = new ArrayList<>(
+                    groupStarts[authorId + 1] - groupStarts[authorId]);
+            for (int position = groupStarts[authorId];
+                 position < groupStarts[authorId + 1]; position++) {
+                int row = groupedRows[position];
+                if (decodedBooks[row] == null) {
+                    decodedBooks[row] = getBook(row);
+                }
+                booksByAuthor.add(decodedBooks[row]);
+            }
+            groupedBooks.put(authorNames[authorId], booksByAuthor);
+        }
+        return groupedBooks;
+    }
+
+    /**
+     * Counts the authors of one year at a time in an array indexed by
+     * author id, keeping the maximum while counting, and resets only the
+     * counters the year touched.
+     */
+    public Map<Integer, Set<String>> findTopAuthorsPerEachYear() {
+        int[] rowsByYear = new int[size];
+        for (int row = 0; row < size; row++) {
+            rowsByYear[row] = row;
+        }
+        int[] sortedYears = Arrays.copyOf(years, size);
+        sortRowsByYear(rowsByYear, sortedYears);
+        int[] frequencies = new int[authorCount()];
+        int[] touchedAuthors = new int[authorCount()];
+        Map<Integer, Set<String>> topAuthorsPerYear = new HashMap<>();
+        int yearStart = 0;
+        while (yearStart < size) {
+            int year = sortedYears[yearStart];
+            int yearEnd = yearStart;
+            int touched = 0;
+            int maxFrequency = 0;
+            while (yearEnd < size && sortedYears[yearEnd] == year) {
+                int row = rowsByYear[yearEnd];
+                for (int offset = authorOffsets[row];
+                     offset < authorOffsets[row + 1]; offset++) {
+                    int authorId = authorIds[offset];
+                    if (frequencies[authorId] == 0) {
+                        touchedAuthors[touched] = authorId;
+                        touched++;
+                    }
+                    frequencies[authorId]++;
+                    maxFrequency = Math.max(maxFrequency,
+                            frequencies[authorId]);
+                }
+                yearEnd++;
+            }
+            Set<String> topAuthors = new HashSet<>();
+            for (int index = 0; index < touched; index++) {
+                int authorId = touchedAuthors[index];
+                if (frequencies[authorId] == maxFrequency) {
+                    topAuthors.add(authorNames[authorId]);
+                }
+                frequencies[authorId] = 0;
+            }
+            topAuthorsPerYear.put(year, topAuthors);
+            yearStart = yearEnd;
+        }
+        return topAuthorsPerYear;
+    }
+
+    /**
+     * Sorts {@code sortedYears}, a copy of the year column, and
+     * {@code rows} along with it.
+     */
+    private static void sortRowsByYear(int[] rows, int[] sortedYears) {
+        long[] keys = new long[rows.length];
+        for (int index = 0; index < rows.length; index++) {
+            keys[index] = ((long) sortedYears[index] << Integer.SIZE)
+                    | rows[index];
+        }
+        Arrays.sort(keys);
+        for (int index = 0; index < rows.length; index++) {
+            sortedYears[index] = (int) (keys[index] >> Integer.SIZE);
+            rows[index] = (int) keys[index];
+        }
+    }
+
+    public Set<Tuple<Topic,
+            List<String>>> findTopicsWithTheMostNumberOfBooks() {
+        int[] booksPerTopic = new int[TOPICS.length + 1];
+        for (int row = 0; row < size; row++) {
+            booksPerTopic[topics[row] + 1]++;
+        }
+        int maxBooksNumber = 0;
+        for (int count : booksPerTopic) {
+            maxBooksNumber = Math.max(maxBooksNumber, count);
+        }
+        Set<Tuple<Topic, List<String>>> topTopics = new HashSet<>();
+        if (maxBooksNumber == 0) {
+            return topTopics;
+        }
+        List<List<String>> titlesPerTopic = new ArrayList<>();
+        for (int count : booksPerTopic) {
+            if (count == maxBooksNumber) {
+                titlesPerTopic.add(new ArrayList<>(count));
+            } else {
+                titlesPerTopic.add(null);
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            List<String> topicTitles = titlesPerTopic.get(topics[row] + 1);
+            if (topicTitles != null) {
+                topicTitles.add(titles[row]);
+            }
+        }
+        for (int topic = 0; topic < booksPerTopic.length; topic++) {
+            if (titlesPerTopic.get(topic) != null) {
+                topTopics.add(new Tuple<>(decodeTopic((byte) (topic - 1)),
+                        titlesPerTopic.get(topic)));
+            }
+        }
+        return topTopics;
+    }
+}
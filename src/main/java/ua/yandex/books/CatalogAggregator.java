@@ -0,0 +1,46 @@
+package ua.yandex.books;
+
+import ua.yandex.tuple.Tuple;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Accumulates the {@link Book} aggregations one book at a time, so that a
+ * catalog streamed by {@link CatalogReader} is aggregated in a single pass
+ * without being collected into a list first. After the same books were
+ * accepted, every query returns what the static method of {@link Book} of
+ * the same name returns for them.
+ *
+ * <p>{@link #groupBooksByAuthors()} returns the aggregator's own map, which
+ * later books keep extending.
+ */
+public class CatalogAggregator implements Consumer<Book> {
+    private final Map<String, List<Book>> groupedBooks = new HashMap<>();
+    private final Map<Integer, FrequencyCounter<String>>
+            authorsFrequencyPerYear = new HashMap<>();
+    private final TopicTitles titlesByTopic = new TopicTitles();
+
+    @Override
+    public void accept(Book book) {
+        Book.groupByAuthors(groupedBooks, book);
+        Book.countAuthors(authorsFrequencyPerYear, book);
+        titlesByTopic.add(book.getTopic(), book.getTitle());
+    }
+
+    public Map<String, List<Book>> groupBooksByAuthors() {
+        return groupedBooks;
+    }
+
+    public Map<Integer, Set<String>> findTopAuthorsPerEachYear() {
+        return Book.findTopAuthorsPerYear(authorsFrequencyPerYear);
+    }
+
+    public Set<Tuple<Topic,
+            List<String>>> findTopicsWithTheMostNumberOfBooks() {
+        return titlesByTopic.findTopTopics();
+    }
+}
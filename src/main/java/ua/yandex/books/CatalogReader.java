@@ -0,0 +1,226 @@
+package ua.yandex.books;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streams a catalog file into {@link Book}s without holding the catalog in
+ * memory. The file is UTF-8 text with one book per line and four
+ * tab-separated fields:
+ *
+ * <pre>
+ * title TAB author1;author2 TAB TOPIC TAB year
+ * </pre>
+ *
+ * <p>The authors field may be empty, and an empty topic field stands for a
+ * {@code null} topic. Fields cannot contain tabs or line breaks, and author
+ * names cannot contain semicolons. Empty lines are skipped and
+ * {@code \r\n} line ends are accepted.
+ *
+ * <p>The file is read through one reusable buffer, which grows only for a
+ * line longer than itself, and parsed in place: the only objects created
+ * per line are the book, its title and author strings, and its author
+ * list. Feeding a {@link CatalogAggregator} gives all the aggregations in
+ * one pass.
+ */
+public final class CatalogReader {
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final byte FIELD_SEPARATOR = '\t';
+    private static final byte AUTHOR_SEPARATOR = ';';
+    private static final byte LINE_SEPARATOR = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final int FIELDS = 4;
+    private static final int RADIX = 10;
+    private static final Topic[] TOPICS = Topic.values();
+    private static final byte[][] TOPIC_NAMES = topicNames();
+
+    private CatalogReader() {
+    }
+
+    private static byte[][] topicNames() {
+        byte[][] names = new byte[TOPICS.length][];
+        for (int ordinal = 0; ordinal < TOPICS.length; ordinal++) {
+            names[ordinal] = TOPICS[ordinal].name()
+                    .getBytes(StandardCharsets.US_ASCII);
+        }
+        return names;
+    }
+
+    /**
+     * Passes every book of the catalog file to {@code consumer}, in file
+     * order.
+     *
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    public static void read(Path catalog, Consumer<? super Book> consumer)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(catalog,
+                StandardOpenOption.READ)) {
+            read(channel, consumer);
+        }
+    }
+
+    /**
+     * Passes every book read from {@code channel} to {@code consumer}, in
+     * order. The channel is left open.
+     *
+     * @throws IOException if the channel cannot be read or a line is
+     *                     malformed
+     */
+    public static void read(ReadableByteChannel channel,
+                            Consumer<? super Book> consumer)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+        int[] fieldEnds = new int[FIELDS];
+        int lineNumber = 0;
+        for (;;) {
+            boolean endOfInput = channel.read(buffer) < 0;
+            ((Buffer) buffer).flip();
+            byte[] bytes = buffer.array();
+            int lineStart = 0;
+            int limit = buffer.limit();
+            for (int index = 0; index < limit; index++) {
+                if (bytes[index] == LINE_SEPARATOR) {
+                    lineNumber++;
+                    parseLine(bytes, lineStart, index, fieldEnds,
+                            lineNumber, consumer);
+                    lineStart = index + 1;
+                }
+            }
+            if (endOfInput) {
+                if (lineStart < limit) {
+                    parseLine(bytes, lineStart, limit, fieldEnds,
+                            lineNumber + 1, consumer);
+                }
+                return;
+            }
+            ((Buffer) buffer).position(lineStart);
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                ByteBuffer grownBuffer =
+                        ByteBuffer.allocate(2 * buffer.capacity());
+                ((Buffer) buffer).flip();
+                grownBuffer.put(buffer);
+                buffer = grownBuffer;
+            }
+        }
+    }
+
+    private static void parseLine(byte[] bytes, int from, int to,
+                                  int[] fieldEnds, int lineNumber,
+                                  Consumer<? super Book> consumer)
+            throws IOException {
+        int end = to;
+        if (end > from && bytes[end - 1] == CARRIAGE_RETURN) {
+            end--;
+        }
+        if (end == from) {
+            return;
+        }
+        int field = 0;
+        for (int index = from; index < end; index++) {
+            if (bytes[index] == FIELD_SEPARATOR) {
+                if (field == FIELDS - 1) {
+                    throw malformed(lineNumber);
+                }
+                fieldEnds[field] = index;
+                field++;
+            }
+        }
+        if (field != FIELDS - 1) {
+            throw malformed(lineNumber);
+        }
+        fieldEnds[FIELDS - 1] = end;
+        String title = new String(bytes, from, fieldEnds[0] - from,
+                StandardCharsets.UTF_8);
+        List<String> authors = parseAuthors(bytes, fieldEnds[0] + 1,
+                fieldEnds[1]);
+        Topic topic = parseTopic(bytes, fieldEnds[1] + 1, fieldEnds[2],
+                lineNumber);
+        int year = parseYear(bytes, fieldEnds[2] + 1, fieldEnds[FIELDS - 1],
+                lineNumber);
+        consumer.accept(new Book(authors, title, topic, year));
+    }
+
+    private static List<String> parseAuthors(byte[] bytes, int from,
+                                             int to) {
+        if (from == to) {
+            return Collections.emptyList();
+        }
+        List<String> authors = new ArrayList<>();
+        int nameStart = from;
+        for (int index = from; index <= to; index++) {
+            if (index == to || bytes[index] == AUTHOR_SEPARATOR) {
+                authors.add(new String(bytes, nameStart, index - nameStart,
+                        StandardCharsets.UTF_8));
+                nameStart = index + 1;
+            }
+        }
+        return authors;
+    }
+
+    private static Topic parseTopic(byte[] bytes, int from, int to,
+                                    int lineNumber) throws IOException {
+        if (from == to) {
+            return null;
+        }
+        for (int ordinal = 0; ordinal < TOPICS.length; ordinal++) {
+            if (matches(TOPIC_NAMES[ordinal], bytes, from, to)) {
+                return TOPICS[ordinal];
+            }
+        }
+        throw malformed(lineNumber);
+    }
+
+    private static boolean matches(byte[] name, byte[] bytes, int from,
+                                   int to) {
+        if (name.length != to - from) {
+            return false;
+        }
+        for (int index = 0; index < name.length; index++) {
+            if (name[index] != bytes[from + index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseYear(byte[] bytes, int from, int to,
+                                 int lineNumber) throws IOException {
+        int start = from;
+        boolean negative = start < to && bytes[start] == '-';
+        if (negative) {
+            start++;
+        }
+        if (start == to) {
+            throw malformed(lineNumber);
+        }
+        int year = 0;
+        for (int index = start; index < to; index++) {
+            int digit = bytes[index] - '0';
+            if (digit < 0 || digit >= RADIX
+                    || year > (Integer.MAX_VALUE - digit) / RADIX) {
+                throw malformed(lineNumber);
+            }
+            year = year * RADIX + digit;
+        }
+        if (negative) {
+            return -year;
+        }
+        return year;
+    }
+
+    private static IOException malformed(int lineNumber) {
+        return new IOException("Malformed catalog line " + lineNumber + ".");
+    }
+}
@@ -0,0 +1,150 @@
+package ua.yandex.books;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Counts occurrences of keys in an open-addressing table with linear
+ * probing, keeping the counts in an {@code int[]} next to the keys. A count
+ * is incremented in place, so counting a key that is already present
+ * allocates nothing, and the highest count is kept up to date while
+ * counting, so the most frequent keys are found in one scan of the table.
+ * Keys may be {@code null}; they are never removed.
+ */
+final class FrequencyCounter<K> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int HASH_SHIFT = 16;
+    private static final Object NULL_KEY = new Object();
+    private Object[] keys = new Object[DEFAULT_CAPACITY];
+    private int[] counts = new int[DEFAULT_CAPACITY];
+    private int size;
+    private int maxCount;
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> HASH_SHIFT);
+    }
+
+    private static Object maskNull(Object key) {
+        if (key == null) {
+            return NULL_KEY;
+        }
+        return key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> K unmaskNull(Object key) {
+        if (key == NULL_KEY) {
+            return null;
+        }
+        return (K) key;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int maxCount() {
+        return maxCount;
+    }
+
+    /**
+     * Counts one more occurrence of {@code key} and returns its new count.
+     */
+    int increment(K key) {
+        return add(key, 1);
+    }
+
+    /**
+     * Counts {@code occurrences} more occurrences of {@code key}, a positive
+     * number, and returns its new count.
+     */
+    int add(K key, int occurrences) {
+        Object maskedKey = maskNull(key);
+        int mask = keys.length - 1;
+        int slot = hash(maskedKey) & mask;
+        for (;;) {
+            Object slotKey = keys[slot];
+            if (slotKey == null) {
+                keys[slot] = maskedKey;
+                counts[slot] = occurrences;
+                maxCount = Math.max(maxCount, occurrences);
+                size++;
+                if (size > keys.length - (keys.length >>> 2)) {
+                    resize();
+                }
+                return occurrences;
+            }
+            if (slotKey == maskedKey || slotKey.equals(maskedKey)) {
+                int count = counts[slot] + occurrences;
+                counts[slot] = count;
+                maxCount = Math.max(maxCount, count);
+                return count;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    int count(Object key) {
+        Object maskedKey = maskNull(key);
+        int mask = keys.length - 1;
+        int slot = hash(maskedKey) & mask;
+        for (;;) {
+            Object slotKey = keys[slot];
+            if (slotKey == null) {
+                return 0;
+            }
+            if (slotKey == maskedKey || slotKey.equals(maskedKey)) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Adds the counts of {@code other} to this counter and returns it.
+     */
+    FrequencyCounter<K> addAll(FrequencyCounter<K> other) {
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.keys[slot] != null) {
+                add(FrequencyCounter.<K>unmaskNull(other.keys[slot]),
+                        other.counts[slot]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the keys counted {@link #maxCount()} times, or an empty set if
+     * nothing was counted.
+     */
+    Set<K> mostFrequent() {
+        Set<K> mostFrequentKeys = new HashSet<>();
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null && counts[slot] == maxCount) {
+                mostFrequentKeys.add(FrequencyCounter.<K>unmaskNull(
+                        keys[slot]));
+            }
+        }
+        return mostFrequentKeys;
+    }
+
+    private void resize() {
+        Object[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new Object[2 * oldKeys.length];
+        counts = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            Object key = oldKeys[oldSlot];
+            if (key != null) {
+                int slot = hash(key) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                counts[slot] = oldCounts[oldSlot];
+            }
+        }
+    }
+}
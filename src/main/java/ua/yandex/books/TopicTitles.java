@@ -0,0 +1,79 @@
+package ua.yandex.books;
+
+import ua.yandex.tuple.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Titles grouped by topic in an array indexed by topic ordinal, with one
+ * more slot in front for books without a topic. The size of the largest
+ * group is kept up to date while titles are added, so the top topics are
+ * found without another pass over the groups.
+ */
+final class TopicTitles {
+    private static final Topic[] TOPICS = Topic.values();
+    private final List<String>[] titlesBySlot = new List[TOPICS.length + 1];
+    private int maxCount;
+
+    private static int slotOf(Topic topic) {
+        if (topic == null) {
+            return 0;
+        }
+        return topic.ordinal() + 1;
+    }
+
+    private static Topic topicOf(int slot) {
+        if (slot == 0) {
+            return null;
+        }
+        return TOPICS[slot - 1];
+    }
+
+    void add(Topic topic, String title) {
+        int slot = slotOf(topic);
+        List<String> titles = titlesBySlot[slot];
+        if (titles == null) {
+            titles = new ArrayList<>();
+            titlesBySlot[slot] = titles;
+        }
+        titles.add(title);
+        maxCount = Math.max(maxCount, titles.size());
+    }
+
+    /**
+     * Appends the titles of {@code other}, which come from a later part of
+     * the catalog, to this one's and returns it.
+     */
+    TopicTitles addAll(TopicTitles other) {
+        for (int slot = 0; slot < titlesBySlot.length; slot++) {
+            List<String> otherTitles = other.titlesBySlot[slot];
+            if (otherTitles == null) {
+                continue;
+            }
+            if (titlesBySlot[slot] == null) {
+                titlesBySlot[slot] = new ArrayList<>(otherTitles);
+            } else {
+                titlesBySlot[slot].addAll(otherTitles);
+            }
+            maxCount = Math.max(maxCount, titlesBySlot[slot].size());
+        }
+        return this;
+    }
+
+    /**
+     * Returns the topics with the most titles, each paired with its titles.
+     */
+    Set<Tuple<Topic, List<String>>> findTopTopics() {
+        Set<Tuple<Topic, List<String>>> topTopics = new HashSet<>();
+        for (int slot = 0; slot < titlesBySlot.length; slot++) {
+            List<String> titles = titlesBySlot[slot];
+            if (titles != null && titles.size() == maxCount) {
+                topTopics.add(new Tuple<>(topicOf(slot), titles));
+            }
+        }
+        return topTopics;
+    }
+}
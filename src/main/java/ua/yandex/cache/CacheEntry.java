@@ -0,0 +1,60 @@
+package ua.yandex.cache;
+
+/**
+ * Value stored in the {@link ua.yandex.prioritymap.PriorityHashMap} behind a
+ * {@link PriorityCache}, together with the bookkeeping its eviction policy
+ * ranks it by.
+ */
+final class CacheEntry<K, V> {
+    private final K key;
+    private V value;
+    private int weight;
+    private long writeTime;
+    private long lastAccess;
+    private long frequency;
+
+    CacheEntry(K key, V value, int weight, long writeTime, long lastAccess) {
+        this.key = key;
+        this.value = value;
+        this.weight = weight;
+        this.writeTime = writeTime;
+        this.lastAccess = lastAccess;
+        this.frequency = 1;
+    }
+
+    K getKey() {
+        return key;
+    }
+
+    V getValue() {
+        return value;
+    }
+
+    int getWeight() {
+        return weight;
+    }
+
+    long getWriteTime() {
+        return writeTime;
+    }
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    long getFrequency() {
+        return frequency;
+    }
+
+    void write(V newValue, int newWeight, long time, long access) {
+        value = newValue;
+        weight = newWeight;
+        writeTime = time;
+        recordAccess(access);
+    }
+
+    void recordAccess(long access) {
+        lastAccess = access;
+        frequency++;
+    }
+}
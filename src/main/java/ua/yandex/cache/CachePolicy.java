@@ -0,0 +1,76 @@
+package ua.yandex.cache;
+
+/**
+ * Decides which entry a {@link PriorityCache} evicts when it runs out of
+ * room. The cache keeps its entries in a priority heap ordered by the
+ * policy, so the next victim is always at the top.
+ */
+public enum CachePolicy {
+    /**
+     * Evicts the least recently used entry.
+     */
+    LRU(true) {
+        @Override
+        int compareForEviction(CacheEntry<?, ?> first,
+                               CacheEntry<?, ?> second) {
+            return Long.compare(second.getLastAccess(), first.getLastAccess());
+        }
+    },
+    /**
+     * Evicts the least frequently used entry, the least recently used one
+     * among equally frequent entries.
+     */
+    LFU(true) {
+        @Override
+        int compareForEviction(CacheEntry<?, ?> first,
+                               CacheEntry<?, ?> second) {
+            int comparison =
+                    Long.compare(second.getFrequency(), first.getFrequency());
+            if (comparison != 0) {
+                return comparison;
+            }
+            return LRU.compareForEviction(first, second);
+        }
+    },
+    /**
+     * Evicts the entry written longest ago, which is also the one that
+     * expires first. Reads do not reorder entries, and expired entries are
+     * swept from the top of the heap on every write.
+     */
+    TTL(false) {
+        @Override
+        int compareForEviction(CacheEntry<?, ?> first,
+                               CacheEntry<?, ?> second) {
+            return Long.compare(second.getWriteTime(), first.getWriteTime());
+        }
+    },
+    /**
+     * Evicts like {@link #LRU} but admits a new entry into a full cache only
+     * if a frequency sketch has seen its key more often than the key of the
+     * would-be victim, which keeps one-off keys from flushing popular ones.
+     */
+    TINY_LFU(true) {
+        @Override
+        int compareForEviction(CacheEntry<?, ?> first,
+                               CacheEntry<?, ?> second) {
+            return LRU.compareForEviction(first, second);
+        }
+    };
+
+    private final boolean reordersOnAccess;
+
+    CachePolicy(boolean reordersOnAccess) {
+        this.reordersOnAccess = reordersOnAccess;
+    }
+
+    /**
+     * Returns a positive number if {@code first} should be evicted before
+     * {@code second}.
+     */
+    abstract int compareForEviction(CacheEntry<?, ?> first,
+                                    CacheEntry<?, ?> second);
+
+    boolean reordersOnAccess() {
+        return reordersOnAccess;
+    }
+}
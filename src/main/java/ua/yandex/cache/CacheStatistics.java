@@ -0,0 +1,52 @@
+package ua.yandex.cache;
+
+/**
+ * Point-in-time snapshot of the counters of a {@link PriorityCache}.
+ */
+public final class CacheStatistics {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+
+    CacheStatistics(long hits, long misses, long evictions, long expirations) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries evicted or rejected for lack of room.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getExpirations() {
+        return expirations;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        if (requests == 0) {
+            return 1;
+        }
+        return (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics{hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions
+                + ", expirations=" + expirations + '}';
+    }
+}
@@ -0,0 +1,84 @@
+package ua.yandex.cache;
+
+/**
+ * Count-min sketch of 4-bit counters that estimates how often keys were
+ * seen. Once the number of recorded keys reaches ten times the cache size,
+ * all counters are halved, so the estimates favour recent popularity.
+ */
+final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+        0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final int COUNTER_BITS = 4;
+    private static final int COUNTER_MASK = 0xf;
+    private static final int ROW_SHIFT = 8;
+    private static final int HALF_SHIFT = 32;
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int SAMPLE_FACTOR = 10;
+    private final long[] table;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maximumSize) {
+        int length = 1;
+        while (length < maximumSize && length < (1 << (HALF_SHIFT - 2))) {
+            length <<= 1;
+        }
+        table = new long[length];
+        sampleSize = (int) Math.min(Integer.MAX_VALUE,
+                (long) SAMPLE_FACTOR * Math.max(1, maximumSize));
+    }
+
+    private int indexOf(int hash, int row) {
+        long mixed = (hash + SEEDS[row]) * SEEDS[row];
+        mixed += mixed >>> HALF_SHIFT;
+        return (int) mixed & (table.length - 1);
+    }
+
+    private static int offsetOf(int hash, int row) {
+        return ((hash >>> (row * ROW_SHIFT)) & COUNTER_MASK) * COUNTER_BITS;
+    }
+
+    private static int spread(Object key) {
+        int hash = key.hashCode() * (int) SEEDS[0];
+        return hash ^ (hash >>> (HALF_SHIFT / 2));
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key);
+        int frequency = COUNTER_MASK;
+        for (int row = 0; row < DEPTH; row++) {
+            int count = (int) (table[indexOf(hash, row)]
+                    >>> offsetOf(hash, row)) & COUNTER_MASK;
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key);
+        boolean incremented = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = indexOf(hash, row);
+            int offset = offsetOf(hash, row);
+            if (((table[index] >>> offset) & COUNTER_MASK) != COUNTER_MASK) {
+                table[index] += 1L << offset;
+                incremented = true;
+            }
+        }
+        if (incremented) {
+            additions++;
+            if (additions >= sampleSize) {
+                reset();
+            }
+        }
+    }
+
+    private void reset() {
+        for (int index = 0; index < table.length; index++) {
+            table[index] = (table[index] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+}
@@ -0,0 +1,318 @@
+package ua.yandex.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import ua.yandex.prioritymap.EvictionListener;
+import ua.yandex.prioritymap.PriorityHashMap;
+
+/**
+ * Size- and weight-bounded cache on top of {@link PriorityHashMap}. The map
+ * ranks entries by a {@link CachePolicy} so that the next victim is always
+ * the entry with the highest priority: a lookup is a hash lookup, the
+ * bookkeeping of a hit re-sifts one entry in O(log n), and an eviction is a
+ * poll.
+ *
+ * <p>Entries may expire a fixed time after they were written. Expiry is
+ * lazy: an expired entry is dropped when it is read, when
+ * {@link #cleanUp()} runs, or, under {@link CachePolicy#TTL}, when a write
+ * finds it at the top of the heap.
+ *
+ * <p>Neither keys nor values may be {@code null}. The cache is not
+ * thread-safe.
+ */
+public class PriorityCache<K extends Comparable, V> {
+    private final CachePolicy policy;
+    private final int maximumSize;
+    private final LongSupplier ticker;
+    private final PriorityHashMap<K, CacheEntry<K, V>> entries;
+    private final FrequencySketch sketch;
+    private long maximumWeight = Long.MAX_VALUE;
+    private Weigher<? super K, ? super V> weigher = (key, value) -> 1;
+    private long expireAfterWriteNanos = Long.MAX_VALUE;
+    private EvictionListener<? super K, ? super V> removalListener;
+    private long totalWeight;
+    private long accessCount;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    public PriorityCache(CachePolicy policy, int maximumSize) {
+        this(policy, maximumSize, System::nanoTime);
+    }
+
+    /**
+     * Creates a cache that reads time, in nanoseconds, from {@code ticker}.
+     */
+    public PriorityCache(CachePolicy policy, int maximumSize,
+                         LongSupplier ticker) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException(
+                    "Maximum size must be positive or zero.");
+        }
+        this.policy = Objects.requireNonNull(policy);
+        this.maximumSize = maximumSize;
+        this.ticker = Objects.requireNonNull(ticker);
+        entries = new PriorityHashMap<>((firstEntry, secondEntry) -> policy
+                .compareForEviction(firstEntry.getValue(),
+                        secondEntry.getValue()));
+        if (policy == CachePolicy.TINY_LFU) {
+            sketch = new FrequencySketch(maximumSize);
+        } else {
+            sketch = null;
+        }
+    }
+
+    /**
+     * Bounds the total weight of the cached entries in addition to their
+     * number. Must be called while the cache is empty.
+     */
+    public void setMaximumWeight(long newMaximumWeight,
+                                 Weigher<? super K, ? super V> newWeigher) {
+        if (newMaximumWeight < 0) {
+            throw new IllegalArgumentException(
+                    "Maximum weight must be positive or zero.");
+        }
+        if (!entries.isEmpty()) {
+            throw new IllegalStateException("Cache must be empty.");
+        }
+        maximumWeight = newMaximumWeight;
+        weigher = Objects.requireNonNull(newWeigher);
+    }
+
+    public void setExpireAfterWrite(long duration, TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException(
+                    "Expiry duration must be positive.");
+        }
+        expireAfterWriteNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * Sets the listener told about every entry that leaves the cache other
+     * than through {@link #invalidate(Object)} or {@link #clear()}: evicted,
+     * rejected on admission, or expired.
+     */
+    public void setRemovalListener(
+            EvictionListener<? super K, ? super V> listener) {
+        removalListener = listener;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * Returns the cached value, or {@code null} if the key is absent or its
+     * entry has expired.
+     */
+    public V get(K key) {
+        Objects.requireNonNull(key);
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        CacheEntry<K, V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (isExpired(entry, ticker.getAsLong())) {
+            entries.remove(key);
+            expire(entry);
+            misses++;
+            return null;
+        }
+        hits++;
+        entry.recordAccess(++accessCount);
+        if (policy.reordersOnAccess()) {
+            entries.updatePriority(key);
+        }
+        return entry.getValue();
+    }
+
+    /**
+     * Returns the cached value, computing and caching it with
+     * {@code loader} on a miss.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = Objects.requireNonNull(loader.apply(key));
+            putValue(key, value, false);
+        }
+        return value;
+    }
+
+    /**
+     * Caches {@code value} and returns the value it replaced, evicting
+     * entries as needed. Under {@link CachePolicy#TINY_LFU} a new key may be
+     * rejected instead, in which case it is reported to the removal
+     * listener.
+     */
+    public V put(K key, V value) {
+        return putValue(key, value, true);
+    }
+
+    /**
+     * Backs {@link #put(Object, Object)}. The loading
+     * {@link #get(Object, Function)} has already recorded the key in the
+     * frequency sketch, so it passes {@code recordKey} as {@code false} to
+     * keep a loaded key from being counted twice.
+     */
+    private V putValue(K key, V value, boolean recordKey) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        long now = ticker.getAsLong();
+        if (sketch != null && recordKey) {
+            sketch.increment(key);
+        }
+        int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException(
+                    "Weight must be positive or zero.");
+        }
+        CacheEntry<K, V> entry = entries.get(key);
+        if (entry != null && isExpired(entry, now)) {
+            entries.remove(key);
+            expire(entry);
+            entry = null;
+        }
+        if (entry != null) {
+            V oldValue = entry.getValue();
+            totalWeight += weight - entry.getWeight();
+            entry.write(value, weight, now, ++accessCount);
+            entries.updatePriority(key);
+            evictOverflow(now, 0, 0);
+            return oldValue;
+        }
+        entry = new CacheEntry<>(key, value, weight, now, ++accessCount);
+        if (maximumSize == 0 || weight > maximumWeight
+                || !admit(entry, now)) {
+            evictions++;
+            notifyRemoval(entry);
+            return null;
+        }
+        evictOverflow(now, 1, weight);
+        entries.put(key, entry);
+        totalWeight += weight;
+        return null;
+    }
+
+    private boolean admit(CacheEntry<K, V> candidate, long now) {
+        if (sketch == null || entries.size() < maximumSize) {
+            return true;
+        }
+        expireFromTop(now);
+        if (entries.size() < maximumSize) {
+            return true;
+        }
+        CacheEntry<K, V> victim = entries.peekValueWithPriorityKey();
+        return victim == null || sketch.frequency(candidate.getKey())
+                > sketch.frequency(victim.getKey());
+    }
+
+    /**
+     * Evicts entries until {@code incomingCount} more entries of total
+     * weight {@code incomingWeight} fit. Making room before inserting keeps
+     * a new entry from being its own victim, which under
+     * {@link CachePolicy#LFU} it would always be.
+     */
+    private void evictOverflow(long now, int incomingCount,
+                               int incomingWeight) {
+        expireFromTop(now);
+        while (!entries.isEmpty()
+                && (entries.size() + incomingCount > maximumSize
+                || totalWeight + incomingWeight > maximumWeight)) {
+            CacheEntry<K, V> victim = entries.pollValueWithPriorityKey();
+            totalWeight -= victim.getWeight();
+            evictions++;
+            notifyRemoval(victim);
+        }
+    }
+
+    /**
+     * Drops the expired entries at the top of the heap. Only under
+     * {@link CachePolicy#TTL} does the heap order match the expiry order,
+     * so other policies leave expired entries to reads and cleanUp.
+     */
+    private void expireFromTop(long now) {
+        if (policy != CachePolicy.TTL) {
+            return;
+        }
+        CacheEntry<K, V> top = entries.peekValueWithPriorityKey();
+        while (top != null && isExpired(top, now)) {
+            entries.pollValueWithPriorityKey();
+            expire(top);
+            top = entries.peekValueWithPriorityKey();
+        }
+    }
+
+    private boolean isExpired(CacheEntry<K, V> entry, long now) {
+        return now - entry.getWriteTime() >= expireAfterWriteNanos;
+    }
+
+    private void expire(CacheEntry<K, V> entry) {
+        totalWeight -= entry.getWeight();
+        expirations++;
+        notifyRemoval(entry);
+    }
+
+    private void notifyRemoval(CacheEntry<K, V> entry) {
+        if (removalListener != null) {
+            removalListener.onEviction(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Removes the entry for {@code key} and returns its value, or
+     * {@code null} if there was none.
+     */
+    public V invalidate(Object key) {
+        CacheEntry<K, V> entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        totalWeight -= entry.getWeight();
+        return entry.getValue();
+    }
+
+    public void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    /**
+     * Drops every expired entry. This walks the whole cache, except under
+     * {@link CachePolicy#TTL}, where the expired entries are at the top of
+     * the heap.
+     */
+    public void cleanUp() {
+        long now = ticker.getAsLong();
+        if (policy == CachePolicy.TTL) {
+            expireFromTop(now);
+            return;
+        }
+        Iterator<Map.Entry<K, CacheEntry<K, V>>> iterator =
+                entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            CacheEntry<K, V> entry = iterator.next().getValue();
+            if (isExpired(entry, now)) {
+                iterator.remove();
+                expire(entry);
+            }
+        }
+    }
+
+    public CacheStatistics getStatistics() {
+        return new CacheStatistics(hits, misses, evictions, expirations);
+    }
+}
@@ -0,0 +1,14 @@
+package ua.yandex.cache;
+
+/**
+ * Computes the weight of a cache entry for
+ * {@link PriorityCache#setMaximumWeight(long, Weigher)}.
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+    /**
+     * Returns the weight of the entry; it must not be negative and must not
+     * change while the entry is cached.
+     */
+    int weigh(K key, V value);
+}
@@ -0,0 +1,556 @@
+package ua.yandex.prioritymap;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe counterpart of {@link PriorityHashMap}.
+ *
+ * <p>The hash side is a {@link ConcurrentHashMap} of entry nodes, which gives
+ * lock-free reads, CAS or per-bin locked writes and a resize that other
+ * writers help with instead of waiting for. The priority side is a relaxed
+ * multi-queue: every node lives in one of several binary heaps, each with its
+ * own lock. {@link #pollValueWithPriorityKey()} compares the tops of two
+ * randomly chosen heaps and takes the larger one, so concurrent consumers
+ * rarely contend on the same lock. The price is that a poll returns one of the
+ * highest-priority entries, not necessarily the maximum.
+ *
+ * <p>Neither keys nor values may be {@code null}. The views are read-only.
+ */
+public class ConcurrentPriorityHashMap<K extends Comparable, V>
+        implements ConcurrentMap<K, V> {
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    private static final int QUEUES_PER_PROCESSOR = 2;
+    private static final int INITIAL_QUEUE_CAPACITY = 16;
+    private final ConcurrentHashMap<K, Node<K, V>> table;
+    private final PriorityQueue<K, V>[] queues;
+
+    static final class Node<K extends Comparable, V>
+            implements Map.Entry<K, V> {
+        private final K key;
+        private volatile V value;
+        private boolean removed;
+        private PriorityQueue<K, V> queue;
+        private int heapIndex = -1;
+
+        private Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V newValue) {
+            Objects.requireNonNull(newValue);
+            synchronized (this) {
+                V oldValue = value;
+                if (!removed) {
+                    value = newValue;
+                }
+                return oldValue;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, entry.getKey())
+                    && Objects.equals(value, entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    public ConcurrentPriorityHashMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public ConcurrentPriorityHashMap(int initialCapacity) {
+        this(initialCapacity, QUEUES_PER_PROCESSOR
+                * Runtime.getRuntime().availableProcessors());
+    }
+
+    public ConcurrentPriorityHashMap(int initialCapacity, int queueCount) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException(
+                    "Initial capacity must be positive or zero.");
+        }
+        if (queueCount <= 0) {
+            throw new IllegalArgumentException(
+                    "Queue count must be positive.");
+        }
+        table = new ConcurrentHashMap<>(initialCapacity);
+        queues = new PriorityQueue[queueCount];
+        for (int index = 0; index < queueCount; index++) {
+            queues[index] = new PriorityQueue<>();
+        }
+    }
+
+    private static int compareNodes(Node<?, ?> firstNode,
+                                    Node<?, ?> secondNode) {
+        return firstNode.key.compareTo(secondNode.key);
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return table.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return table.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        for (Node<K, V> node : table.values()) {
+            if (value.equals(node.value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = table.get(key);
+        if (node == null) {
+            return null;
+        }
+        return node.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return putValue(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putValue(key, value, true);
+    }
+
+    private V putValue(K key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        Node<K, V> newNode = null;
+        for (;;) {
+            Node<K, V> node = table.get(key);
+            if (node == null) {
+                if (newNode == null) {
+                    newNode = new Node<>(key, value);
+                }
+                node = table.putIfAbsent(key, newNode);
+                if (node == null) {
+                    enqueue(newNode);
+                    return null;
+                }
+            }
+            synchronized (node) {
+                if (!node.removed) {
+                    V oldValue = node.value;
+                    if (!onlyIfAbsent) {
+                        node.value = value;
+                    }
+                    return oldValue;
+                }
+            }
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        for (;;) {
+            Node<K, V> node = table.get(key);
+            if (node == null) {
+                return null;
+            }
+            V oldValue = unlink(node, null);
+            if (oldValue != null) {
+                return oldValue;
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (value == null) {
+            return false;
+        }
+        for (;;) {
+            Node<K, V> node = table.get(key);
+            if (node == null) {
+                return false;
+            }
+            synchronized (node) {
+                if (!node.removed && !value.equals(node.value)) {
+                    return false;
+                }
+            }
+            if (unlink(node, value) != null) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes the node from the table and from its queue. Returns the removed
+     * value, or {@code null} if the node was already removed or its value no
+     * longer equals {@code expectedValue}.
+     */
+    private V unlink(Node<K, V> node, Object expectedValue) {
+        V oldValue;
+        PriorityQueue<K, V> queue;
+        synchronized (node) {
+            if (node.removed) {
+                return null;
+            }
+            if (expectedValue != null && !expectedValue.equals(node.value)) {
+                return null;
+            }
+            table.remove(node.key, node);
+            node.removed = true;
+            oldValue = node.value;
+            queue = node.queue;
+        }
+        if (queue == null) {
+            return oldValue;
+        }
+        queue.lock.lock();
+        try {
+            if (node.queue == queue && node.heapIndex >= 0) {
+                queue.remove(node);
+            }
+        } finally {
+            queue.lock.unlock();
+        }
+        return oldValue;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        for (;;) {
+            Node<K, V> node = table.get(key);
+            if (node == null) {
+                return false;
+            }
+            synchronized (node) {
+                if (!node.removed) {
+                    if (!oldValue.equals(node.value)) {
+                        return false;
+                    }
+                    node.value = newValue;
+                    return true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Objects.requireNonNull(value);
+        for (;;) {
+            Node<K, V> node = table.get(key);
+            if (node == null) {
+                return null;
+            }
+            synchronized (node) {
+                if (!node.removed) {
+                    V oldValue = node.value;
+                    node.value = value;
+                    return oldValue;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (m == null) {
+            return;
+        }
+        for (Entry<? extends K, ? extends V> nextEntry : m.entrySet()) {
+            put(nextEntry.getKey(), nextEntry.getValue());
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Node<K, V> node : table.values()) {
+            unlink(node, null);
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(table.keySet());
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                Iterator<Node<K, V>> nodes = table.values().iterator();
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return nodes.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return nodes.next().value;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return table.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                Iterator<Node<K, V>> nodes = table.values().iterator();
+                return new Iterator<Entry<K, V>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return nodes.hasNext();
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        return nodes.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return table.size();
+            }
+        };
+    }
+
+    /**
+     * Returns the value of the largest key among the tops of all queues. Under
+     * concurrent updates the answer may already be stale when it is returned.
+     */
+    public V peekValueWithPriorityKey() {
+        Node<K, V> maxKeyNode = null;
+        for (PriorityQueue<K, V> queue : queues) {
+            Node<K, V> top = queue.top;
+            if (top != null && (maxKeyNode == null
+                    || compareNodes(top, maxKeyNode) > 0)) {
+                maxKeyNode = top;
+            }
+        }
+        if (maxKeyNode == null) {
+            return null;
+        }
+        return maxKeyNode.value;
+    }
+
+    /**
+     * Removes and returns the value of one of the highest-priority entries.
+     * Two queues are picked at random and the larger of their tops is taken,
+     * so the result is exact only when a single queue is configured. Returns
+     * {@code null} once every queue is empty.
+     */
+    public V pollValueWithPriorityKey() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (;;) {
+            PriorityQueue<K, V> queue = queues[random.nextInt(queues.length)];
+            PriorityQueue<K, V> other = queues[random.nextInt(queues.length)];
+            Node<K, V> top = queue.top;
+            Node<K, V> otherTop = other.top;
+            if (top == null || (otherTop != null
+                    && compareNodes(otherTop, top) > 0)) {
+                queue = other;
+                top = otherTop;
+            }
+            if (top == null) {
+                queue = findNonEmptyQueue();
+                if (queue == null) {
+                    return null;
+                }
+            }
+            Node<K, V> node = queue.tryPoll();
+            if (node != null) {
+                V value = unlink(node, null);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    private PriorityQueue<K, V> findNonEmptyQueue() {
+        for (PriorityQueue<K, V> queue : queues) {
+            if (queue.top != null) {
+                return queue;
+            }
+        }
+        return null;
+    }
+
+    private void enqueue(Node<K, V> node) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (;;) {
+            PriorityQueue<K, V> queue = queues[random.nextInt(queues.length)];
+            if (queue.lock.tryLock()) {
+                try {
+                    synchronized (node) {
+                        if (!node.removed) {
+                            queue.add(node);
+                        }
+                    }
+                    return;
+                } finally {
+                    queue.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Binary max-heap of nodes guarded by its own lock. The current top is
+     * also published through a volatile field for lock-free inspection.
+     */
+    private static final class PriorityQueue<K extends Comparable, V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private Node<K, V>[] heap = new Node[INITIAL_QUEUE_CAPACITY];
+        private int size;
+        private volatile Node<K, V> top;
+
+        private Node<K, V> tryPoll() {
+            if (!lock.tryLock()) {
+                return null;
+            }
+            try {
+                if (size == 0) {
+                    return null;
+                }
+                Node<K, V> node = heap[0];
+                remove(node);
+                return node;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void add(Node<K, V> node) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, 2 * size);
+            }
+            node.queue = this;
+            node.heapIndex = size;
+            heap[size] = node;
+            size++;
+            siftUp(node);
+            top = heap[0];
+        }
+
+        private void remove(Node<K, V> node) {
+            size--;
+            Node<K, V> lastNode = heap[size];
+            heap[size] = null;
+            if (lastNode != node) {
+                lastNode.heapIndex = node.heapIndex;
+                heap[lastNode.heapIndex] = lastNode;
+                siftDown(lastNode);
+                siftUp(lastNode);
+            }
+            node.heapIndex = -1;
+            if (size == 0) {
+                top = null;
+            } else {
+                top = heap[0];
+            }
+        }
+
+        private void siftUp(Node<K, V> node) {
+            int index = node.heapIndex;
+            while (index > 0) {
+                int parentIndex = (index - 1) / 2;
+                Node<K, V> parent = heap[parentIndex];
+                if (compareNodes(parent, node) >= 0) {
+                    break;
+                }
+                parent.heapIndex = index;
+                heap[index] = parent;
+                index = parentIndex;
+            }
+            node.heapIndex = index;
+            heap[index] = node;
+        }
+
+        private void siftDown(Node<K, V> node) {
+            int index = node.heapIndex;
+            int half = size / 2;
+            while (index < half) {
+                int childIndex = 2 * index + 1;
+                Node<K, V> child = heap[childIndex];
+                int rightIndex = childIndex + 1;
+                if (rightIndex < size
+                        && compareNodes(heap[rightIndex], child) > 0) {
+                    childIndex = rightIndex;
+                    child = heap[childIndex];
+                }
+                if (compareNodes(node, child) >= 0) {
+                    break;
+                }
+                child.heapIndex = index;
+                heap[index] = child;
+                index = childIndex;
+            }
+            node.heapIndex = index;
+            heap[index] = node;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ua.yandex.prioritymap;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+
+/**
+ * Entry set view of a {@link PriorityHashMap}. Its entries are the nodes of
+ * the map themselves.
+ */
+final class EntrySetView<K extends Comparable, V>
+        extends AbstractSet<Map.Entry<K, V>> {
+    private final PriorityHashMap<K, V> map;
+
+    EntrySetView(PriorityHashMap<K, V> map) {
+        this.map = map;
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new HashIterator<K, V, Map.Entry<K, V>>(map) {
+            @Override
+            Map.Entry<K, V> element(PriorityHashMap.Node<K, V> node) {
+                return node;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return new HeapSpliterator<>(map, node -> node,
+                Spliterator.DISTINCT);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return findEntry(o) != null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        PriorityHashMap.Node<K, V> node = findEntry(o);
+        if (node == null) {
+            return false;
+        }
+        map.removeNode(node);
+        return true;
+    }
+
+    private PriorityHashMap.Node<K, V> findEntry(Object o) {
+        if (!(o instanceof Map.Entry)) {
+            return null;
+        }
+        Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+        PriorityHashMap.Node<K, V> node = map.findByKey(entry.getKey());
+        if (node == null
+                || !Objects.equals(node.getValue(), entry.getValue())) {
+            return null;
+        }
+        return node;
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+}
@@ -0,0 +1,11 @@
+package ua.yandex.prioritymap;
+
+/**
+ * Receives the entries a bounded {@link PriorityHashMap} drops: the
+ * lowest-priority entry evicted to make room for a new key, or the new entry
+ * itself when it ranks too low to be kept.
+ */
+@FunctionalInterface
+public interface EvictionListener<K, V> {
+    void onEviction(K key, V value);
+}
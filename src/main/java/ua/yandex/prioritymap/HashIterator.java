@@ -0,0 +1,77 @@
+package ua.yandex.prioritymap;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the nodes of a {@link PriorityHashMap} in table order,
+ * covering both tables while a resize is in progress.
+ */
+abstract class HashIterator<K extends Comparable, V, T>
+        implements Iterator<T> {
+    private final PriorityHashMap<K, V> map;
+    private final PriorityHashMap.Node<K, V>[][] tables;
+    private int tableIndex;
+    private PriorityHashMap.Node<K, V> nextNode;
+    private PriorityHashMap.Node<K, V> currentNode;
+    private int nextPosition;
+    private int expectedModCount;
+
+    HashIterator(PriorityHashMap<K, V> map) {
+        this.map = map;
+        tables = map.tablesForIteration();
+        expectedModCount = map.getModCount();
+        advance();
+    }
+
+    abstract T element(PriorityHashMap.Node<K, V> node);
+
+    private void advance() {
+        while (nextNode == null) {
+            PriorityHashMap.Node<K, V>[] iteratedTable = tables[tableIndex];
+            if (nextPosition < iteratedTable.length) {
+                nextNode = PriorityHashMap.firstNode(
+                        iteratedTable[nextPosition]);
+                nextPosition++;
+            } else if (tableIndex + 1 < tables.length) {
+                tableIndex++;
+                nextPosition = 0;
+            } else {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextNode != null;
+    }
+
+    @Override
+    public T next() {
+        if (map.getModCount() != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (nextNode == null) {
+            throw new NoSuchElementException();
+        }
+        currentNode = nextNode;
+        nextNode = nextNode.next();
+        advance();
+        return element(currentNode);
+    }
+
+    @Override
+    public void remove() {
+        if (currentNode == null) {
+            throw new IllegalStateException();
+        }
+        if (map.getModCount() != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        map.removeNode(currentNode);
+        currentNode = null;
+        expectedModCount = map.getModCount();
+    }
+}
@@ -0,0 +1,62 @@
+package ua.yandex.prioritymap;
+
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Fork-join task behind the parallel bulk operations of
+ * {@link PriorityHashMap}. It halves its range of the priority heap until
+ * the range holds no more than the parallelism threshold, transforms every
+ * entry of the leaves and combines the non-null results with the reducer.
+ */
+final class HeapBulkTask<K extends Comparable, V, U> extends RecursiveTask<U> {
+    private static final long serialVersionUID = 1L;
+
+    private final PriorityHashMap<K, V> map;
+    private final long threshold;
+    private final int origin;
+    private final int fence;
+    private final Function<PriorityHashMap.Node<K, V>, ? extends U> transformer;
+    private final BiFunction<? super U, ? super U, ? extends U> reducer;
+
+    HeapBulkTask(PriorityHashMap<K, V> map, long threshold, int origin,
+                 int fence,
+                 Function<PriorityHashMap.Node<K, V>, ? extends U> transformer,
+                 BiFunction<? super U, ? super U, ? extends U> reducer) {
+        this.map = map;
+        this.threshold = Math.max(1, threshold);
+        this.origin = origin;
+        this.fence = fence;
+        this.transformer = transformer;
+        this.reducer = reducer;
+    }
+
+    @Override
+    protected U compute() {
+        if (fence - origin > threshold) {
+            int middle = (origin + fence) >>> 1;
+            HeapBulkTask<K, V, U> prefix = new HeapBulkTask<>(map, threshold,
+                    origin, middle, transformer, reducer);
+            prefix.fork();
+            U suffixResult = new HeapBulkTask<>(map, threshold, middle, fence,
+                    transformer, reducer).compute();
+            return combine(prefix.join(), suffixResult);
+        }
+        U result = null;
+        for (int index = origin; index < fence; index++) {
+            result = combine(result, transformer.apply(map.heapNodeAt(index)));
+        }
+        return result;
+    }
+
+    private U combine(U first, U second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        return reducer.apply(first, second);
+    }
+}
@@ -0,0 +1,106 @@
+package ua.yandex.prioritymap;
+
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Spliterator over the views of a {@link PriorityHashMap}. It walks a range
+ * of the priority heap rather than of the hash table: the heap holds every
+ * entry in a dense array, so halving a range splits the work evenly and the
+ * size of every part is known exactly.
+ */
+final class HeapSpliterator<K extends Comparable, V, T>
+        implements Spliterator<T> {
+    private final PriorityHashMap<K, V> map;
+    private final Function<PriorityHashMap.Node<K, V>, T> mapper;
+    private final int characteristics;
+    private int index;
+    private int fence;
+    private int expectedModCount;
+
+    HeapSpliterator(PriorityHashMap<K, V> map,
+                    Function<PriorityHashMap.Node<K, V>, T> mapper,
+                    int characteristics) {
+        this(map, mapper, characteristics, 0, -1, 0);
+    }
+
+    private HeapSpliterator(PriorityHashMap<K, V> map,
+                            Function<PriorityHashMap.Node<K, V>, T> mapper,
+                            int characteristics, int index, int fence,
+                            int expectedModCount) {
+        this.map = map;
+        this.mapper = mapper;
+        this.characteristics = characteristics | SIZED | SUBSIZED;
+        this.index = index;
+        this.fence = fence;
+        this.expectedModCount = expectedModCount;
+    }
+
+    /**
+     * Binds the spliterator to the map's size on first use, so that it sees
+     * modifications made between its creation and the start of traversal.
+     */
+    private int getFence() {
+        if (fence < 0) {
+            fence = map.size();
+            expectedModCount = map.getModCount();
+        }
+        return fence;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        int end = getFence();
+        int middle = (index + end) >>> 1;
+        if (index >= middle) {
+            return null;
+        }
+        Spliterator<T> prefix = new HeapSpliterator<>(map, mapper,
+                characteristics, index, middle, expectedModCount);
+        index = middle;
+        return prefix;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        if (index >= getFence()) {
+            return false;
+        }
+        T element = mapper.apply(map.heapNodeAt(index));
+        index++;
+        action.accept(element);
+        if (map.getModCount() != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        int end = getFence();
+        for (; index < end; index++) {
+            action.accept(mapper.apply(map.heapNodeAt(index)));
+        }
+        if (map.getModCount() != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return getFence() - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+}
@@ -0,0 +1,57 @@
+package ua.yandex.prioritymap;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Spliterator;
+
+/**
+ * Key set view of a {@link PriorityHashMap}.
+ */
+final class KeySetView<K extends Comparable, V> extends AbstractSet<K> {
+    private final PriorityHashMap<K, V> map;
+
+    KeySetView(PriorityHashMap<K, V> map) {
+        this.map = map;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new HashIterator<K, V, K>(map) {
+            @Override
+            K element(PriorityHashMap.Node<K, V> node) {
+                return node.getKey();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return map.containsKey(o);
+    }
+
+    @Override
+    public Spliterator<K> spliterator() {
+        return new HeapSpliterator<>(map, node -> node.getKey(),
+                Spliterator.DISTINCT);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        PriorityHashMap.Node<K, V> node = map.findByKey(o);
+        if (node == null) {
+            return false;
+        }
+        map.removeNode(node);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+}
@@ -0,0 +1,290 @@
+package ua.yandex.prioritymap;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Variant of {@link PriorityHashMap} for primitive {@code long} keys. Keys are
+ * stored unboxed in an open-addressing table with linear probing and
+ * backward-shift deletion, and the priority heap compares them directly, so
+ * none of the operations box a key.
+ */
+public class LongPriorityHashMap<V> {
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int HASH_SHIFT = 16;
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+    private final int initialCapacity;
+    private final float loadFactor;
+    private long[] keys;
+    private Object[] values;
+    private boolean[] used;
+    private int[] heapPositions;
+    private int[] heap;
+    private int size;
+    private int threshold;
+
+    public LongPriorityHashMap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongPriorityHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongPriorityHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException(
+                    "Initial capacity must be positive or zero.");
+        }
+        if (loadFactor >= 1 || loadFactor <= 0) {
+            throw new IllegalArgumentException(
+                    "Load factor must be between 0 and 1.");
+        }
+        this.initialCapacity = initialCapacity;
+        this.loadFactor = loadFactor;
+        allocate(OpenAddressingPriorityHashMap
+                .tableSizeFor(initialCapacity, loadFactor));
+    }
+
+    private static int hash(long key) {
+        int hash = ((int) (key ^ (key >>> Integer.SIZE))) * GOLDEN_RATIO;
+        return hash ^ (hash >>> HASH_SHIFT);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        used = new boolean[capacity];
+        heapPositions = new int[capacity];
+        heap = new int[capacity];
+        threshold = (int) Math.min(capacity * loadFactor, capacity - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return findSlot(key) >= 0;
+    }
+
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public boolean containsValue(Object value) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot] && Objects.equals(values[slot], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public V get(long key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        return (V) values[slot];
+    }
+
+    public V put(long key, V value) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                V oldValue = (V) values[slot];
+                values[slot] = value;
+                return oldValue;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= threshold) {
+            resize(keys.length * 2);
+            slot = emptySlotFor(key);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        addToHeap(slot);
+        return null;
+    }
+
+    private int emptySlotFor(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (used[slot]) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int newCapacity) {
+        if (keys.length >= MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Map capacity exhausted.");
+        }
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        boolean[] oldUsed = used;
+        int[] oldHeapPositions = heapPositions;
+        allocate(newCapacity);
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldUsed[oldSlot]) {
+                int slot = emptySlotFor(oldKeys[oldSlot]);
+                keys[slot] = oldKeys[oldSlot];
+                values[slot] = oldValues[oldSlot];
+                used[slot] = true;
+                int heapIndex = oldHeapPositions[oldSlot];
+                heapPositions[slot] = heapIndex;
+                heap[heapIndex] = slot;
+            }
+        }
+    }
+
+    public V remove(long key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        V oldValue = (V) values[slot];
+        removeSlot(slot);
+        return oldValue;
+    }
+
+    private void removeSlot(int slot) {
+        removeFromHeap(slot);
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (used[next]) {
+            int ideal = hash(keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                int heapIndex = heapPositions[next];
+                heapPositions[hole] = heapIndex;
+                heap[heapIndex] = hole;
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[hole] = false;
+        values[hole] = null;
+    }
+
+    public void clear() {
+        allocate(OpenAddressingPriorityHashMap
+                .tableSizeFor(initialCapacity, loadFactor));
+        size = 0;
+    }
+
+    public long[] keys() {
+        long[] result = new long[size];
+        int insertionIndex = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot]) {
+                result[insertionIndex] = keys[slot];
+                insertionIndex++;
+            }
+        }
+        return result;
+    }
+
+    public long peekPriorityKey() {
+        if (size == 0) {
+            throw new NoSuchElementException("Map is empty.");
+        }
+        return keys[heap[0]];
+    }
+
+    public V peekValueWithPriorityKey() {
+        if (size == 0) {
+            return null;
+        }
+        return (V) values[heap[0]];
+    }
+
+    public V pollValueWithPriorityKey() {
+        if (size == 0) {
+            return null;
+        }
+        int slot = heap[0];
+        V value = (V) values[slot];
+        removeSlot(slot);
+        return value;
+    }
+
+    private void addToHeap(int slot) {
+        heap[size] = slot;
+        heapPositions[slot] = size;
+        size++;
+        siftUp(slot);
+    }
+
+    private void removeFromHeap(int slot) {
+        size--;
+        int lastSlot = heap[size];
+        if (lastSlot != slot) {
+            int heapIndex = heapPositions[slot];
+            heap[heapIndex] = lastSlot;
+            heapPositions[lastSlot] = heapIndex;
+            siftDown(lastSlot);
+            siftUp(lastSlot);
+        }
+    }
+
+    private void siftUp(int slot) {
+        long key = keys[slot];
+        int index = heapPositions[slot];
+        while (index > 0) {
+            int parentIndex = (index - 1) / 2;
+            int parentSlot = heap[parentIndex];
+            if (keys[parentSlot] >= key) {
+                break;
+            }
+            heap[index] = parentSlot;
+            heapPositions[parentSlot] = index;
+            index = parentIndex;
+        }
+        heap[index] = slot;
+        heapPositions[slot] = index;
+    }
+
+    private void siftDown(int slot) {
+        long key = keys[slot];
+        int index = heapPositions[slot];
+        int half = size / 2;
+        while (index < half) {
+            int childIndex = 2 * index + 1;
+            int childSlot = heap[childIndex];
+            int rightIndex = childIndex + 1;
+            if (rightIndex < size && keys[heap[rightIndex]] > keys[childSlot]) {
+                childIndex = rightIndex;
+                childSlot = heap[childIndex];
+            }
+            if (key >= keys[childSlot]) {
+                break;
+            }
+            heap[index] = childSlot;
+            heapPositions[childSlot] = index;
+            index = childIndex;
+        }
+        heap[index] = slot;
+        heapPositions[slot] = index;
+    }
+}
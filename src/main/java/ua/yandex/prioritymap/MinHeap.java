@@ -0,0 +1,136 @@
+package ua.yandex.prioritymap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Indexed min-heap over the nodes of a bounded {@link PriorityHashMap}. It
+ * mirrors the map's priority heap with the order reversed, so that the
+ * lowest-priority entry, the next one to evict, is found in O(1) and removed
+ * in O(log n). Every node records its position in {@code minHeapIndex}.
+ */
+final class MinHeap<K extends Comparable, V> {
+    private final Comparator<? super Map.Entry<K, V>> comparator;
+    private PriorityHashMap.Node<K, V>[] nodes;
+    private int size;
+
+    MinHeap(Comparator<? super Map.Entry<K, V>> comparator, int capacity) {
+        this.comparator = comparator;
+        nodes = new PriorityHashMap.Node[capacity];
+    }
+
+    /**
+     * Builds a min-heap over the first {@code count} nodes of
+     * {@code heapNodes} in O(n).
+     */
+    static <K extends Comparable, V> MinHeap<K, V> of(
+            PriorityHashMap.Node<K, V>[] heapNodes, int count,
+            Comparator<? super Map.Entry<K, V>> comparator) {
+        MinHeap<K, V> minHeap = new MinHeap<>(comparator, heapNodes.length);
+        for (int index = 0; index < count; index++) {
+            minHeap.append(heapNodes[index]);
+        }
+        minHeap.heapify();
+        return minHeap;
+    }
+
+    PriorityHashMap.Node<K, V> peek() {
+        return nodes[0];
+    }
+
+    /**
+     * Adds {@code node} at the end without restoring the heap order; follow
+     * with {@link #restore(PriorityHashMap.Node)} or {@link #heapify()}.
+     */
+    void append(PriorityHashMap.Node<K, V> node) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, 2 * size + 1);
+        }
+        node.setMinHeapIndex(size);
+        nodes[size] = node;
+        size++;
+    }
+
+    void remove(PriorityHashMap.Node<K, V> node) {
+        size--;
+        PriorityHashMap.Node<K, V> lastNode = nodes[size];
+        nodes[size] = null;
+        if (lastNode != node) {
+            lastNode.setMinHeapIndex(node.minHeapIndex());
+            nodes[lastNode.minHeapIndex()] = lastNode;
+            restore(lastNode);
+        }
+    }
+
+    /**
+     * Puts {@code replacement} in the place of {@code node}, which it
+     * stands for from now on.
+     */
+    void replace(PriorityHashMap.Node<K, V> node,
+                 PriorityHashMap.Node<K, V> replacement) {
+        replacement.setMinHeapIndex(node.minHeapIndex());
+        nodes[node.minHeapIndex()] = replacement;
+    }
+
+    /**
+     * Moves {@code node} to its place after its priority changed.
+     */
+    void restore(PriorityHashMap.Node<K, V> node) {
+        siftDown(node);
+        siftUp(node);
+    }
+
+    void heapify() {
+        for (int index = size / 2 - 1; index >= 0; index--) {
+            siftDown(nodes[index]);
+        }
+    }
+
+    /**
+     * Empties the heap, keeping its capacity.
+     */
+    void clear() {
+        Arrays.fill(nodes, 0, size, null);
+        size = 0;
+    }
+
+    private void siftUp(PriorityHashMap.Node<K, V> node) {
+        int index = node.minHeapIndex();
+        while (index > 0) {
+            int parentIndex = (index - 1) / 2;
+            PriorityHashMap.Node<K, V> parent = nodes[parentIndex];
+            if (comparator.compare(parent, node) <= 0) {
+                break;
+            }
+            parent.setMinHeapIndex(index);
+            nodes[index] = parent;
+            index = parentIndex;
+        }
+        node.setMinHeapIndex(index);
+        nodes[index] = node;
+    }
+
+    private void siftDown(PriorityHashMap.Node<K, V> node) {
+        int index = node.minHeapIndex();
+        int half = size / 2;
+        while (index < half) {
+            int childIndex = 2 * index + 1;
+            PriorityHashMap.Node<K, V> child = nodes[childIndex];
+            int rightIndex = childIndex + 1;
+            if (rightIndex < size
+                    && comparator.compare(nodes[rightIndex], child) < 0) {
+                childIndex = rightIndex;
+                child = nodes[childIndex];
+            }
+            if (comparator.compare(node, child) <= 0) {
+                break;
+            }
+            child.setMinHeapIndex(index);
+            nodes[index] = child;
+            index = childIndex;
+        }
+        node.setMinHeapIndex(index);
+        nodes[index] = node;
+    }
+}
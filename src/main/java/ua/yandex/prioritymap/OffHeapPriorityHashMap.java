@@ -0,0 +1,876 @@
+package ua.yandex.prioritymap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Variant of {@link OpenAddressingPriorityHashMap} that keeps all of its
+ * state outside the Java heap, so even very large maps add nothing to the
+ * work of the garbage collector.
+ *
+ * <p>The state lives in two buffers. The index buffer holds a header, the
+ * linear-probing slot table (hash, record offset and heap position of each
+ * slot) and the binary max-heap of slot numbers. The data buffer holds the
+ * records, each one a length-prefixed serialized key followed by a
+ * length-prefixed serialized value. Records are appended; the space of
+ * removed or rewritten records is reclaimed by compaction once it makes up
+ * half of the data buffer.
+ *
+ * <p>Keys are hashed and compared for equality by their serialized bytes,
+ * and deserialized only to be ordered in the heap. Views are read-only and
+ * their entries are snapshots.
+ *
+ * <p>{@link #open(Path, Serializer, Serializer)} maps the buffers onto a
+ * pair of files, so a map reopens without being rebuilt. The files are
+ * consistent after {@link #force()} or {@link #close()}. Each buffer is
+ * limited to 2 GB, which is the addressing limit of {@link ByteBuffer}.
+ */
+public class OffHeapPriorityHashMap<K extends Comparable, V>
+        implements Map<K, V>, Closeable {
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 26;
+    private static final int MAXIMUM_REGION_SIZE = Integer.MAX_VALUE;
+    private static final int DEFAULT_DATA_CAPACITY = 4096;
+    private static final int SCRATCH_CAPACITY = 256;
+    private static final String DATA_FILE_SUFFIX = ".data";
+    private static final int MAGIC = 0x50484d31;
+    private static final int VERSION = 1;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 12;
+    private static final int DATA_END_OFFSET = 16;
+    private static final int GARBAGE_OFFSET = 20;
+    private static final int HEADER_SIZE = 24;
+    private static final int SLOT_RECORD = 4;
+    private static final int SLOT_HEAP_POSITION = 8;
+    private static final int SLOT_SIZE = 12;
+    private static final int RECORD_HEADER = 2 * Integer.BYTES;
+    private static final int NULL_LENGTH = -1;
+    private static final int HASH_MULTIPLIER = 31;
+    private static final int HASH_SHIFT = 16;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final Region indexRegion;
+    private final Region dataRegion;
+    private ByteBuffer index;
+    private ByteBuffer data;
+    private ByteBuffer scratch = ByteBuffer.allocate(SCRATCH_CAPACITY);
+    private int capacity;
+    private int threshold;
+    private int size;
+    private int dataEnd;
+    private int garbage;
+
+    public OffHeapPriorityHashMap(Serializer<K> keySerializer,
+                                  Serializer<V> valueSerializer) {
+        this(keySerializer, valueSerializer, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public OffHeapPriorityHashMap(Serializer<K> keySerializer,
+                                  Serializer<V> valueSerializer,
+                                  int initialCapacity) {
+        this(keySerializer, valueSerializer, new DirectRegion(),
+                new DirectRegion());
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException(
+                    "Initial capacity must be positive or zero.");
+        }
+        try {
+            initialize(initialCapacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private OffHeapPriorityHashMap(Serializer<K> keySerializer,
+                                   Serializer<V> valueSerializer,
+                                   Region indexRegion, Region dataRegion) {
+        if (keySerializer == null || valueSerializer == null) {
+            throw new IllegalArgumentException(
+                    "Serializers must not be null.");
+        }
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.indexRegion = indexRegion;
+        this.dataRegion = dataRegion;
+    }
+
+    /**
+     * Opens the map stored in {@code file} and in a sibling file with the
+     * {@code .data} suffix, creating both if they do not exist yet. The
+     * files are memory-mapped and read lazily, so opening takes the same
+     * time whatever the size of the map.
+     */
+    public static <K extends Comparable, V> OffHeapPriorityHashMap<K, V> open(
+            Path file, Serializer<K> keySerializer,
+            Serializer<V> valueSerializer) throws IOException {
+        Path dataFile =
+                file.resolveSibling(file.getFileName() + DATA_FILE_SUFFIX);
+        FileChannel indexChannel = openChannel(file);
+        FileChannel dataChannel;
+        try {
+            dataChannel = openChannel(dataFile);
+        } catch (IOException e) {
+            indexChannel.close();
+            throw e;
+        }
+        OffHeapPriorityHashMap<K, V> map = new OffHeapPriorityHashMap<>(
+                keySerializer, valueSerializer,
+                new MappedRegion(indexChannel), new MappedRegion(dataChannel));
+        try {
+            if (indexChannel.size() == 0) {
+                map.initialize(DEFAULT_INITIAL_CAPACITY);
+            } else {
+                map.load();
+            }
+        } catch (IOException e) {
+            indexChannel.close();
+            dataChannel.close();
+            throw e;
+        }
+        return map;
+    }
+
+    private static FileChannel openChannel(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    }
+
+    private void initialize(int initialCapacity) throws IOException {
+        capacity = Math.min(MAXIMUM_CAPACITY, OpenAddressingPriorityHashMap
+                .tableSizeFor(initialCapacity, LOAD_FACTOR));
+        threshold = thresholdFor(capacity);
+        index = indexRegion.map(null, indexBytes(capacity));
+        data = dataRegion.map(null, DEFAULT_DATA_CAPACITY);
+        writeHeader();
+    }
+
+    private void load() throws IOException {
+        int indexSize = indexRegion.existingSize();
+        index = indexRegion.map(null, indexSize);
+        if (indexSize < HEADER_SIZE || index.getInt(0) != MAGIC
+                || index.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("Not a priority map index file.");
+        }
+        capacity = index.getInt(CAPACITY_OFFSET);
+        size = index.getInt(SIZE_OFFSET);
+        dataEnd = index.getInt(DATA_END_OFFSET);
+        garbage = index.getInt(GARBAGE_OFFSET);
+        if (capacity <= 0 || capacity > MAXIMUM_CAPACITY
+                || Integer.bitCount(capacity) != 1
+                || indexBytes(capacity) > indexSize) {
+            throw new IOException("Corrupted priority map index file.");
+        }
+        int dataSize = dataRegion.existingSize();
+        if (dataSize < dataEnd) {
+            throw new IOException("Truncated priority map data file.");
+        }
+        threshold = thresholdFor(capacity);
+        data = dataRegion.map(null, Math.max(dataSize, DEFAULT_DATA_CAPACITY));
+    }
+
+    private static int indexBytes(int slotCount) {
+        return HEADER_SIZE + slotCount * (SLOT_SIZE + Integer.BYTES);
+    }
+
+    private static int thresholdFor(int slotCount) {
+        return (int) Math.min(slotCount * LOAD_FACTOR, slotCount - 1);
+    }
+
+    private void writeHeader() {
+        index.putInt(0, MAGIC);
+        index.putInt(VERSION_OFFSET, VERSION);
+        index.putInt(CAPACITY_OFFSET, capacity);
+        index.putInt(SIZE_OFFSET, size);
+        index.putInt(DATA_END_OFFSET, dataEnd);
+        index.putInt(GARBAGE_OFFSET, garbage);
+    }
+
+    /**
+     * Flushes a file-backed map to its files; does nothing for a map that
+     * is not backed by files.
+     */
+    public void force() {
+        indexRegion.force(index);
+        dataRegion.force(data);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (index != null && data != null) {
+            writeHeader();
+            force();
+        }
+        index = null;
+        data = null;
+        try {
+            indexRegion.close();
+        } finally {
+            dataRegion.close();
+        }
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private boolean isOccupied(int slot) {
+        return index.getInt(slotOffset(slot) + SLOT_RECORD) != 0;
+    }
+
+    private int hashAt(int slot) {
+        return index.getInt(slotOffset(slot));
+    }
+
+    private int recordAt(int slot) {
+        return index.getInt(slotOffset(slot) + SLOT_RECORD) - 1;
+    }
+
+    private void setSlot(int slot, int hash, int record) {
+        index.putInt(slotOffset(slot), hash);
+        setRecord(slot, record);
+    }
+
+    private void setRecord(int slot, int record) {
+        index.putInt(slotOffset(slot) + SLOT_RECORD, record + 1);
+    }
+
+    private void clearSlot(int slot) {
+        index.putInt(slotOffset(slot) + SLOT_RECORD, 0);
+    }
+
+    private int heapPositionAt(int slot) {
+        return index.getInt(slotOffset(slot) + SLOT_HEAP_POSITION);
+    }
+
+    private int heapOffset(int heapIndex) {
+        return slotOffset(capacity) + heapIndex * Integer.BYTES;
+    }
+
+    private int heapSlotAt(int heapIndex) {
+        return index.getInt(heapOffset(heapIndex));
+    }
+
+    private void placeInHeap(int slot, int heapIndex) {
+        index.putInt(heapOffset(heapIndex), slot);
+        index.putInt(slotOffset(slot) + SLOT_HEAP_POSITION, heapIndex);
+    }
+
+    /**
+     * Serializes {@code object} into the scratch buffer at {@code start} and
+     * returns the number of bytes written, or {@code NULL_LENGTH} for null.
+     */
+    private <T> int serialize(Serializer<T> serializer, T object, int start) {
+        if (object == null) {
+            return NULL_LENGTH;
+        }
+        for (;;) {
+            ((Buffer) scratch).clear();
+            ((Buffer) scratch).position(start);
+            try {
+                serializer.write(object, scratch);
+                return scratch.position() - start;
+            } catch (BufferOverflowException e) {
+                ByteBuffer biggerScratch =
+                        ByteBuffer.allocate(scratch.capacity() * 2);
+                biggerScratch.put(scratch.array(), 0, start);
+                scratch = biggerScratch;
+            }
+        }
+    }
+
+    private int hashOfScratchKey(int keyLength) {
+        if (keyLength == NULL_LENGTH) {
+            return 0;
+        }
+        int hash = 1;
+        for (int position = 0; position < keyLength; position++) {
+            hash = HASH_MULTIPLIER * hash + scratch.get(position);
+        }
+        return hash ^ (hash >>> HASH_SHIFT);
+    }
+
+    private boolean keyMatches(int record, int keyLength) {
+        if (data.getInt(record) != keyLength) {
+            return false;
+        }
+        int keyStart = record + Integer.BYTES;
+        for (int position = 0; position < keyLength; position++) {
+            if (data.get(keyStart + position) != scratch.get(position)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int recordLength(int record) {
+        int keyBytes = Math.max(0, data.getInt(record));
+        int valueBytes =
+                Math.max(0, data.getInt(record + Integer.BYTES + keyBytes));
+        return RECORD_HEADER + keyBytes + valueBytes;
+    }
+
+    private <T> T readObject(Serializer<T> serializer, int offset) {
+        int length = data.getInt(offset);
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        ByteBuffer bytes = data.duplicate();
+        ((Buffer) bytes).limit(offset + Integer.BYTES + length);
+        ((Buffer) bytes).position(offset + Integer.BYTES);
+        return serializer.read(bytes.slice());
+    }
+
+    private K readKey(int record) {
+        return readObject(keySerializer, record);
+    }
+
+    private V readValue(int record) {
+        int keyBytes = Math.max(0, data.getInt(record));
+        return readObject(valueSerializer,
+                record + Integer.BYTES + keyBytes);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findSlot(key) >= 0;
+    }
+
+    private int findSlot(Object key) {
+        int keyLength = serialize(keySerializer, (K) key, 0);
+        return findSlot(hashOfScratchKey(keyLength), keyLength);
+    }
+
+    private int findSlot(int hash, int keyLength) {
+        int mask = capacity - 1;
+        int slot = hash & mask;
+        while (isOccupied(slot)) {
+            if (hashAt(slot) == hash && keyMatches(recordAt(slot), keyLength)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (isOccupied(slot)
+                    && Objects.equals(readValue(recordAt(slot)), value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        return readValue(recordAt(slot));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int keyLength = serialize(keySerializer, key, 0);
+        int hash = hashOfScratchKey(keyLength);
+        int slot = findSlot(hash, keyLength);
+        int keyBytes = Math.max(0, keyLength);
+        int valueLength = serialize(valueSerializer, value, keyBytes);
+        if (slot >= 0) {
+            int record = recordAt(slot);
+            V oldValue = readValue(record);
+            replaceValue(slot, record, valueLength);
+            writeHeader();
+            return oldValue;
+        }
+        if (size >= threshold) {
+            rehash(capacity * 2);
+        }
+        int record = appendRecord(keyLength, valueLength);
+        slot = emptySlotFor(hash);
+        setSlot(slot, hash, record);
+        addToHeap(slot);
+        writeHeader();
+        return null;
+    }
+
+    private void replaceValue(int slot, int record, int valueLength) {
+        int keyLength = data.getInt(record);
+        int keyBytes = Math.max(0, keyLength);
+        int valueOffset = record + Integer.BYTES + keyBytes;
+        if (data.getInt(valueOffset) == valueLength) {
+            copyFromScratch(keyBytes, valueOffset + Integer.BYTES,
+                    Math.max(0, valueLength));
+            return;
+        }
+        int oldLength = recordLength(record);
+        setRecord(slot, appendRecord(keyLength, valueLength));
+        garbage += oldLength;
+    }
+
+    /**
+     * Appends a record built from the key and value in the scratch buffer
+     * and returns its offset. May compact the data buffer first.
+     */
+    private int appendRecord(int keyLength, int valueLength) {
+        int keyBytes = Math.max(0, keyLength);
+        int valueBytes = Math.max(0, valueLength);
+        ensureDataCapacity(RECORD_HEADER + keyBytes + valueBytes);
+        int record = dataEnd;
+        data.putInt(record, keyLength);
+        copyFromScratch(0, record + Integer.BYTES, keyBytes);
+        int valueOffset = record + Integer.BYTES + keyBytes;
+        data.putInt(valueOffset, valueLength);
+        copyFromScratch(keyBytes, valueOffset + Integer.BYTES, valueBytes);
+        dataEnd = valueOffset + Integer.BYTES + valueBytes;
+        return record;
+    }
+
+    private void copyFromScratch(int from, int to, int length) {
+        ((Buffer) data).position(to);
+        data.put(scratch.array(), from, length);
+    }
+
+    private void ensureDataCapacity(int recordLength) {
+        if (recordLength > data.capacity() - dataEnd && garbage > 0
+                && garbage >= dataEnd / 2) {
+            compact();
+        }
+        if (recordLength <= data.capacity() - dataEnd) {
+            return;
+        }
+        long required = (long) dataEnd + recordLength;
+        long newSize = Math.min(MAXIMUM_REGION_SIZE,
+                Math.max(2L * data.capacity(), required));
+        if (newSize < required) {
+            throw new IllegalStateException("Map capacity exhausted.");
+        }
+        data = resize(dataRegion, data, (int) newSize);
+    }
+
+    /**
+     * Moves the live records to the front of the data buffer, staging them
+     * in a temporary direct buffer rather than on the Java heap.
+     */
+    private void compact() {
+        ByteBuffer liveRecords = ByteBuffer.allocateDirect(dataEnd - garbage);
+        for (int slot = 0; slot < capacity; slot++) {
+            if (isOccupied(slot)) {
+                int record = recordAt(slot);
+                setRecord(slot, liveRecords.position());
+                ((Buffer) data).limit(record + recordLength(record));
+                ((Buffer) data).position(record);
+                liveRecords.put(data);
+                ((Buffer) data).clear();
+            }
+        }
+        ((Buffer) liveRecords).flip();
+        ((Buffer) data).clear();
+        data.put(liveRecords);
+        dataEnd = liveRecords.limit();
+        garbage = 0;
+    }
+
+    private static ByteBuffer resize(Region region, ByteBuffer buffer,
+                                     int newSize) {
+        try {
+            return region.map(buffer, newSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int emptySlotFor(int hash) {
+        int mask = capacity - 1;
+        int slot = hash & mask;
+        while (isOccupied(slot)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Rebuilds the slot table with {@code newCapacity} slots. Entries are
+     * reinserted in heap order, so every entry keeps its heap position and
+     * the heap needs no sifting.
+     */
+    private void rehash(int newCapacity) {
+        if (newCapacity > MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Map capacity exhausted.");
+        }
+        ByteBuffer entries = ByteBuffer.allocateDirect(size * RECORD_HEADER);
+        for (int heapIndex = 0; heapIndex < size; heapIndex++) {
+            int slot = heapSlotAt(heapIndex);
+            entries.putInt(hashAt(slot));
+            entries.putInt(recordAt(slot));
+        }
+        index = resize(indexRegion, index, indexBytes(newCapacity));
+        capacity = newCapacity;
+        threshold = thresholdFor(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            clearSlot(slot);
+        }
+        ((Buffer) entries).flip();
+        for (int heapIndex = 0; heapIndex < size; heapIndex++) {
+            int hash = entries.getInt();
+            int slot = emptySlotFor(hash);
+            setSlot(slot, hash, entries.getInt());
+            placeInHeap(slot, heapIndex);
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        V oldValue = readValue(recordAt(slot));
+        removeSlot(slot);
+        writeHeader();
+        return oldValue;
+    }
+
+    private void removeSlot(int slot) {
+        garbage += recordLength(recordAt(slot));
+        removeFromHeap(slot);
+        int mask = capacity - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (isOccupied(next)) {
+            int ideal = hashAt(next) & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                moveSlot(next, hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        clearSlot(hole);
+        if (size == 0) {
+            dataEnd = 0;
+            garbage = 0;
+        }
+    }
+
+    private void moveSlot(int from, int to) {
+        setSlot(to, hashAt(from), recordAt(from));
+        placeInHeap(to, heapPositionAt(from));
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (m == null) {
+            return;
+        }
+        for (Entry<? extends K, ? extends V> nextEntry : m.entrySet()) {
+            put(nextEntry.getKey(), nextEntry.getValue());
+        }
+    }
+
+    /**
+     * Removes all entries but keeps the buffers, so a cleared map refills
+     * without growing again.
+     */
+    @Override
+    public void clear() {
+        for (int slot = 0; slot < capacity; slot++) {
+            clearSlot(slot);
+        }
+        size = 0;
+        dataEnd = 0;
+        garbage = 0;
+        writeHeader();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                return new SlotIterator<K>() {
+                    @Override
+                    K element(int slot) {
+                        return readKey(recordAt(slot));
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new SlotIterator<V>() {
+                    @Override
+                    V element(int slot) {
+                        return readValue(recordAt(slot));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new SlotIterator<Entry<K, V>>() {
+                    @Override
+                    Entry<K, V> element(int slot) {
+                        int record = recordAt(slot);
+                        return new AbstractMap.SimpleImmutableEntry<>(
+                                readKey(record), readValue(record));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public V peekValueWithPriorityKey() {
+        if (size == 0) {
+            return null;
+        }
+        return readValue(recordAt(heapSlotAt(0)));
+    }
+
+    public V pollValueWithPriorityKey() {
+        if (size == 0) {
+            return null;
+        }
+        int slot = heapSlotAt(0);
+        V value = readValue(recordAt(slot));
+        removeSlot(slot);
+        writeHeader();
+        return value;
+    }
+
+    private static int compareKeys(Object firstKey, Object secondKey) {
+        if (firstKey == secondKey) {
+            return 0;
+        }
+        if (firstKey == null) {
+            return -1;
+        }
+        if (secondKey == null) {
+            return 1;
+        }
+        return ((Comparable) firstKey).compareTo(secondKey);
+    }
+
+    private void addToHeap(int slot) {
+        placeInHeap(slot, size);
+        size++;
+        siftUp(slot);
+    }
+
+    private void removeFromHeap(int slot) {
+        size--;
+        int lastSlot = heapSlotAt(size);
+        if (lastSlot != slot) {
+            placeInHeap(lastSlot, heapPositionAt(slot));
+            siftDown(lastSlot);
+            siftUp(lastSlot);
+        }
+    }
+
+    private void siftUp(int slot) {
+        K key = readKey(recordAt(slot));
+        int heapIndex = heapPositionAt(slot);
+        while (heapIndex > 0) {
+            int parentIndex = (heapIndex - 1) / 2;
+            int parentSlot = heapSlotAt(parentIndex);
+            if (compareKeys(readKey(recordAt(parentSlot)), key) >= 0) {
+                break;
+            }
+            placeInHeap(parentSlot, heapIndex);
+            heapIndex = parentIndex;
+        }
+        placeInHeap(slot, heapIndex);
+    }
+
+    private void siftDown(int slot) {
+        K key = readKey(recordAt(slot));
+        int heapIndex = heapPositionAt(slot);
+        int half = size / 2;
+        while (heapIndex < half) {
+            int childIndex = 2 * heapIndex + 1;
+            int childSlot = heapSlotAt(childIndex);
+            K childKey = readKey(recordAt(childSlot));
+            int rightIndex = childIndex + 1;
+            if (rightIndex < size) {
+                int rightSlot = heapSlotAt(rightIndex);
+                K rightKey = readKey(recordAt(rightSlot));
+                if (compareKeys(rightKey, childKey) > 0) {
+                    childIndex = rightIndex;
+                    childSlot = rightSlot;
+                    childKey = rightKey;
+                }
+            }
+            if (compareKeys(key, childKey) >= 0) {
+                break;
+            }
+            placeInHeap(childSlot, heapIndex);
+            heapIndex = childIndex;
+        }
+        placeInHeap(slot, heapIndex);
+    }
+
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        private int nextSlot = advance(0);
+
+        abstract T element(int slot);
+
+        private int advance(int fromSlot) {
+            int slot = fromSlot;
+            while (slot < capacity && !isOccupied(slot)) {
+                slot++;
+            }
+            return slot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextSlot < capacity;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int slot = nextSlot;
+            nextSlot = advance(slot + 1);
+            return element(slot);
+        }
+    }
+
+    /**
+     * Source of the buffers a map lives in.
+     */
+    private abstract static class Region implements Closeable {
+        /**
+         * Returns the size of the state stored by an earlier session, or 0.
+         */
+        abstract int existingSize() throws IOException;
+
+        /**
+         * Returns a buffer of {@code newSize} bytes that starts with the
+         * contents of {@code current}.
+         */
+        abstract ByteBuffer map(ByteBuffer current, int newSize)
+                throws IOException;
+
+        void force(ByteBuffer buffer) {
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static final class DirectRegion extends Region {
+        @Override
+        int existingSize() {
+            return 0;
+        }
+
+        @Override
+        ByteBuffer map(ByteBuffer current, int newSize) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(newSize);
+            if (current != null) {
+                ByteBuffer contents = current.duplicate();
+                ((Buffer) contents).clear();
+                buffer.put(contents);
+                ((Buffer) buffer).clear();
+            }
+            return buffer;
+        }
+    }
+
+    private static final class MappedRegion extends Region {
+        private final FileChannel channel;
+
+        private MappedRegion(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        int existingSize() throws IOException {
+            return (int) Math.min(channel.size(), MAXIMUM_REGION_SIZE);
+        }
+
+        /**
+         * Maps a longer region of the file; mapping past the end of the file
+         * extends it, and the new mapping already sees the old contents.
+         */
+        @Override
+        ByteBuffer map(ByteBuffer current, int newSize) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+        }
+
+        @Override
+        void force(ByteBuffer buffer) {
+            ((MappedByteBuffer) buffer).force();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
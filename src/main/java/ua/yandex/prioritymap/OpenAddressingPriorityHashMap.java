@@ -0,0 +1,495 @@
+package ua.yandex.prioritymap;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Storage alternative to {@link PriorityHashMap} that keeps keys, values and
+ * hashes in parallel arrays and resolves collisions with linear probing.
+ * Removal uses backward-shift deletion, so the table never holds tombstones.
+ * The priority side is an indexed binary max-heap of slot numbers, ordered
+ * by the natural order of the keys with the {@code null} key lowest.
+ *
+ * <p>The views returned by {@link #keySet()}, {@link #values()} and
+ * {@link #entrySet()} are read-only and backed by the table.
+ */
+public class OpenAddressingPriorityHashMap<K extends Comparable, V>
+        implements Map<K, V> {
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int HASH_SHIFT = 16;
+    private static final Object NULL_KEY = new Object();
+    private final int initialCapacity;
+    private final float loadFactor;
+    private Object[] keys;
+    private Object[] values;
+    private int[] hashes;
+    private int[] heapPositions;
+    private int[] heap;
+    private int size;
+    private int threshold;
+
+    public OpenAddressingPriorityHashMap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public OpenAddressingPriorityHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public OpenAddressingPriorityHashMap(int initialCapacity,
+                                         float loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException(
+                    "Initial capacity must be positive or zero.");
+        }
+        if (loadFactor >= 1 || loadFactor <= 0) {
+            throw new IllegalArgumentException(
+                    "Load factor must be between 0 and 1.");
+        }
+        this.initialCapacity = initialCapacity;
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor(initialCapacity, loadFactor));
+    }
+
+    static int tableSizeFor(int expectedSize, float loadFactor) {
+        long required = (long) Math.ceil(expectedSize / loadFactor) + 1;
+        int capacity = 2;
+        while (capacity < required && capacity < MAXIMUM_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(Object key) {
+        if (key == null) {
+            return 0;
+        }
+        int hash = key.hashCode();
+        return hash ^ (hash >>> HASH_SHIFT);
+    }
+
+    private static Object maskNull(Object key) {
+        if (key == null) {
+            return NULL_KEY;
+        }
+        return key;
+    }
+
+    private static Object unmaskNull(Object key) {
+        if (key == NULL_KEY) {
+            return null;
+        }
+        return key;
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        heapPositions = new int[capacity];
+        heap = new int[capacity];
+        threshold = (int) Math.min(capacity * loadFactor, capacity - 1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findSlot(key) >= 0;
+    }
+
+    private int findSlot(Object key) {
+        Object maskedKey = maskNull(key);
+        int hash = hash(key);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        Object slotKey = keys[slot];
+        while (slotKey != null) {
+            if (hashes[slot] == hash
+                    && (slotKey == maskedKey || maskedKey.equals(slotKey))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+            slotKey = keys[slot];
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null && Objects.equals(values[slot], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        return (V) values[slot];
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Object maskedKey = maskNull(key);
+        int hash = hash(key);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        Object slotKey = keys[slot];
+        while (slotKey != null) {
+            if (hashes[slot] == hash
+                    && (slotKey == maskedKey || maskedKey.equals(slotKey))) {
+                V oldValue = (V) values[slot];
+                values[slot] = value;
+                return oldValue;
+            }
+            slot = (slot + 1) & mask;
+            slotKey = keys[slot];
+        }
+        if (size >= threshold) {
+            resize(keys.length * 2);
+            slot = emptySlotFor(hash);
+        }
+        keys[slot] = maskedKey;
+        values[slot] = value;
+        hashes[slot] = hash;
+        addToHeap(slot);
+        return null;
+    }
+
+    private int emptySlotFor(int hash) {
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int newCapacity) {
+        if (keys.length >= MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Map capacity exhausted.");
+        }
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        int[] oldHeapPositions = heapPositions;
+        allocate(newCapacity);
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldKeys[oldSlot] != null) {
+                int slot = emptySlotFor(oldHashes[oldSlot]);
+                keys[slot] = oldKeys[oldSlot];
+                values[slot] = oldValues[oldSlot];
+                hashes[slot] = oldHashes[oldSlot];
+                int heapIndex = oldHeapPositions[oldSlot];
+                heapPositions[slot] = heapIndex;
+                heap[heapIndex] = slot;
+            }
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        V oldValue = (V) values[slot];
+        removeSlot(slot);
+        return oldValue;
+    }
+
+    private void removeSlot(int slot) {
+        removeFromHeap(slot);
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != null) {
+            int ideal = hashes[next] & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                moveSlot(next, hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = null;
+        values[hole] = null;
+    }
+
+    private void moveSlot(int from, int to) {
+        keys[to] = keys[from];
+        values[to] = values[from];
+        hashes[to] = hashes[from];
+        int heapIndex = heapPositions[from];
+        heapPositions[to] = heapIndex;
+        heap[heapIndex] = to;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (m == null) {
+            return;
+        }
+        for (Entry<? extends K, ? extends V> nextEntry : m.entrySet()) {
+            put(nextEntry.getKey(), nextEntry.getValue());
+        }
+    }
+
+    @Override
+    public void clear() {
+        allocate(tableSizeFor(initialCapacity, loadFactor));
+        size = 0;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                return new SlotIterator<K>() {
+                    @Override
+                    K element(int slot) {
+                        return (K) unmaskNull(keys[slot]);
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new SlotIterator<V>() {
+                    @Override
+                    V element(int slot) {
+                        return (V) values[slot];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new SlotIterator<Entry<K, V>>() {
+                    @Override
+                    Entry<K, V> element(int slot) {
+                        return new SlotEntry(slot);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public V peekValueWithPriorityKey() {
+        if (size == 0) {
+            return null;
+        }
+        return (V) values[heap[0]];
+    }
+
+    public V pollValueWithPriorityKey() {
+        if (size == 0) {
+            return null;
+        }
+        int slot = heap[0];
+        V value = (V) values[slot];
+        removeSlot(slot);
+        return value;
+    }
+
+    private int compareSlots(int firstSlot, int secondSlot) {
+        Object firstKey = unmaskNull(keys[firstSlot]);
+        Object secondKey = unmaskNull(keys[secondSlot]);
+        if (firstKey == secondKey) {
+            return 0;
+        }
+        if (firstKey == null) {
+            return -1;
+        }
+        if (secondKey == null) {
+            return 1;
+        }
+        return ((Comparable) firstKey).compareTo(secondKey);
+    }
+
+    private void addToHeap(int slot) {
+        heap[size] = slot;
+        heapPositions[slot] = size;
+        size++;
+        siftUp(slot);
+    }
+
+    private void removeFromHeap(int slot) {
+        size--;
+        int lastSlot = heap[size];
+        if (lastSlot != slot) {
+            int heapIndex = heapPositions[slot];
+            heap[heapIndex] = lastSlot;
+            heapPositions[lastSlot] = heapIndex;
+            siftDown(lastSlot);
+            siftUp(lastSlot);
+        }
+    }
+
+    private void siftUp(int slot) {
+        int index = heapPositions[slot];
+        while (index > 0) {
+            int parentIndex = (index - 1) / 2;
+            int parentSlot = heap[parentIndex];
+            if (compareSlots(parentSlot, slot) >= 0) {
+                break;
+            }
+            heap[index] = parentSlot;
+            heapPositions[parentSlot] = index;
+            index = parentIndex;
+        }
+        heap[index] = slot;
+        heapPositions[slot] = index;
+    }
+
+    private void siftDown(int slot) {
+        int index = heapPositions[slot];
+        int half = size / 2;
+        while (index < half) {
+            int childIndex = 2 * index + 1;
+            int childSlot = heap[childIndex];
+            int rightIndex = childIndex + 1;
+            if (rightIndex < size
+                    && compareSlots(heap[rightIndex], childSlot) > 0) {
+                childIndex = rightIndex;
+                childSlot = heap[childIndex];
+            }
+            if (compareSlots(slot, childSlot) >= 0) {
+                break;
+            }
+            heap[index] = childSlot;
+            heapPositions[childSlot] = index;
+            index = childIndex;
+        }
+        heap[index] = slot;
+        heapPositions[slot] = index;
+    }
+
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        private int nextSlot = advance(0);
+
+        abstract T element(int slot);
+
+        private int advance(int fromSlot) {
+            int slot = fromSlot;
+            while (slot < keys.length && keys[slot] == null) {
+                slot++;
+            }
+            return slot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextSlot < keys.length;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int slot = nextSlot;
+            nextSlot = advance(slot + 1);
+            return element(slot);
+        }
+    }
+
+    private final class SlotEntry implements Entry<K, V> {
+        private final int slot;
+        private final K key;
+
+        private SlotEntry(int slot) {
+            this.slot = slot;
+            this.key = (K) unmaskNull(keys[slot]);
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return (V) values[slot];
+        }
+
+        @Override
+        public V setValue(V newValue) {
+            V oldValue = (V) values[slot];
+            values[slot] = newValue;
+            return oldValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return Objects.equals(key, entry.getKey())
+                    && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
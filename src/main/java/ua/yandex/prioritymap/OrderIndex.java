@@ -0,0 +1,253 @@
+package ua.yandex.prioritymap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Indexable skip list over the nodes of a {@link PriorityHashMap}, ordered
+ * by key with the {@code null} key lowest. Every link records how many
+ * entries it skips, so besides the ordered searches the list finds the entry
+ * of a given rank in O(log n) expected time.
+ */
+final class OrderIndex<K extends Comparable, V> {
+    private static final int MAX_LEVEL = 16;
+    private static final int LEVEL_BITS = 2;
+    private static final int LEVEL_MASK = (1 << LEVEL_BITS) - 1;
+    private static final int SEED = 0x2545f491;
+    private static final int XORSHIFT_LEFT = 13;
+    private static final int XORSHIFT_RIGHT = 17;
+    private static final int XORSHIFT_FINAL_LEFT = 5;
+
+    private final IndexNode<K, V> head = new IndexNode<>(null, MAX_LEVEL);
+    private int level = 1;
+    private int size;
+    private int randomState = SEED;
+
+    static final class IndexNode<K extends Comparable, V> {
+        private PriorityHashMap.Node<K, V> entry;
+        private final IndexNode<K, V>[] next;
+        private final int[] span;
+
+        private IndexNode(PriorityHashMap.Node<K, V> entry, int level) {
+            this.entry = entry;
+            next = new IndexNode[level];
+            span = new int[level];
+        }
+
+        PriorityHashMap.Node<K, V> getEntry() {
+            return entry;
+        }
+
+        IndexNode<K, V> getNext() {
+            return next[0];
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        for (int index = 0; index < MAX_LEVEL; index++) {
+            head.next[index] = null;
+            head.span[index] = 0;
+        }
+        level = 1;
+        size = 0;
+    }
+
+    void add(PriorityHashMap.Node<K, V> node) {
+        IndexNode<K, V>[] update = new IndexNode[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        IndexNode<K, V> current = head;
+        for (int index = level - 1; index >= 0; index--) {
+            if (index < level - 1) {
+                rank[index] = rank[index + 1];
+            }
+            while (current.next[index] != null && PriorityHashMap.compareKeys(
+                    current.next[index].entry.getKey(), node.getKey()) < 0) {
+                rank[index] += current.span[index];
+                current = current.next[index];
+            }
+            update[index] = current;
+        }
+        int nodeLevel = randomLevel();
+        for (int index = level; index < nodeLevel; index++) {
+            update[index] = head;
+            head.span[index] = size;
+        }
+        level = Math.max(level, nodeLevel);
+        IndexNode<K, V> indexNode = new IndexNode<>(node, nodeLevel);
+        for (int index = 0; index < nodeLevel; index++) {
+            indexNode.next[index] = update[index].next[index];
+            update[index].next[index] = indexNode;
+            indexNode.span[index] =
+                    update[index].span[index] - (rank[0] - rank[index]);
+            update[index].span[index] = rank[0] - rank[index] + 1;
+        }
+        for (int index = nodeLevel; index < level; index++) {
+            update[index].span[index]++;
+        }
+        size++;
+    }
+
+    void remove(PriorityHashMap.Node<K, V> node) {
+        IndexNode<K, V>[] update = new IndexNode[MAX_LEVEL];
+        IndexNode<K, V> current = head;
+        for (int index = level - 1; index >= 0; index--) {
+            while (current.next[index] != null && PriorityHashMap.compareKeys(
+                    current.next[index].entry.getKey(), node.getKey()) < 0) {
+                current = current.next[index];
+            }
+            update[index] = current;
+        }
+        IndexNode<K, V> removed = current.next[0];
+        if (removed == null || removed.entry != node) {
+            return;
+        }
+        for (int index = 0; index < level; index++) {
+            if (update[index].next[index] == removed) {
+                update[index].span[index] += removed.span[index] - 1;
+                update[index].next[index] = removed.next[index];
+            } else {
+                update[index].span[index]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+    }
+
+    /**
+     * Points the index at the node that took over the entry of
+     * {@code node}'s key, such as a tree node after its bucket treeified.
+     */
+    void replace(PriorityHashMap.Node<K, V> node) {
+        IndexNode<K, V> indexNode = ceiling(node.getKey(), true);
+        if (indexNode != null && PriorityHashMap.compareKeys(
+                indexNode.entry.getKey(), node.getKey()) == 0) {
+            indexNode.entry = node;
+        }
+    }
+
+    IndexNode<K, V> first() {
+        return head.next[0];
+    }
+
+    IndexNode<K, V> last() {
+        IndexNode<K, V> current = head;
+        for (int index = level - 1; index >= 0; index--) {
+            while (current.next[index] != null) {
+                current = current.next[index];
+            }
+        }
+        if (current == head) {
+            return null;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the lowest node whose key is above {@code key}, or equal to it
+     * if {@code inclusive}, or {@code null} if there is none.
+     */
+    IndexNode<K, V> ceiling(Object key, boolean inclusive) {
+        IndexNode<K, V> current = head;
+        for (int index = level - 1; index >= 0; index--) {
+            while (current.next[index] != null
+                    && isBelow(current.next[index], key, inclusive)) {
+                current = current.next[index];
+            }
+        }
+        return current.next[0];
+    }
+
+    /**
+     * Returns the highest node whose key is below {@code key}, or equal to
+     * it if {@code inclusive}, or {@code null} if there is none.
+     */
+    IndexNode<K, V> floor(Object key, boolean inclusive) {
+        IndexNode<K, V> current = head;
+        for (int index = level - 1; index >= 0; index--) {
+            while (current.next[index] != null
+                    && isBelow(current.next[index], key, !inclusive)) {
+                current = current.next[index];
+            }
+        }
+        if (current == head) {
+            return null;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the node with {@code rank} lower keys.
+     */
+    IndexNode<K, V> get(int rank) {
+        if (rank < 0 || rank >= size) {
+            throw new IndexOutOfBoundsException("Rank: " + rank
+                    + ", size: " + size);
+        }
+        int position = rank + 1;
+        int traversed = 0;
+        IndexNode<K, V> current = head;
+        for (int index = level - 1; index >= 0; index--) {
+            while (current.next[index] != null
+                    && traversed + current.span[index] <= position) {
+                traversed += current.span[index];
+                current = current.next[index];
+            }
+            if (traversed == position) {
+                return current;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Copies the entries from {@code start} on into a new map that iterates
+     * in key order, stopping before {@code toKey} if {@code bounded}.
+     */
+    static <K extends Comparable, V> Map<K, V> copyRange(
+            IndexNode<K, V> start, K toKey, boolean bounded) {
+        Map<K, V> range = new LinkedHashMap<>();
+        for (IndexNode<K, V> indexNode = start; indexNode != null;
+             indexNode = indexNode.getNext()) {
+            PriorityHashMap.Node<K, V> node = indexNode.entry;
+            if (bounded && PriorityHashMap.compareKeys(node.getKey(),
+                    toKey) >= 0) {
+                break;
+            }
+            range.put(node.getKey(), node.getValue());
+        }
+        return range;
+    }
+
+    private static boolean isBelow(IndexNode<?, ?> indexNode, Object key,
+                                   boolean strictly) {
+        int comparison = PriorityHashMap.compareKeys(indexNode.entry.getKey(),
+                (Comparable) key);
+        if (strictly) {
+            return comparison < 0;
+        }
+        return comparison <= 0;
+    }
+
+    /**
+     * Draws a level with a geometric distribution of ratio 1/4 from a
+     * xorshift generator.
+     */
+    private int randomLevel() {
+        randomState ^= randomState << XORSHIFT_LEFT;
+        randomState ^= randomState >>> XORSHIFT_RIGHT;
+        randomState ^= randomState << XORSHIFT_FINAL_LEFT;
+        int bits = randomState;
+        int nodeLevel = 1;
+        while (nodeLevel < MAX_LEVEL && (bits & LEVEL_MASK) == 0) {
+            nodeLevel++;
+            bits >>>= LEVEL_BITS;
+        }
+        return nodeLevel;
+    }
+}
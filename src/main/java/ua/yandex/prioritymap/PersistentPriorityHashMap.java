@@ -0,0 +1,666 @@
+package ua.yandex.prioritymap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Priority hash map built from persistent structures: a hash array mapped
+ * trie for the lookups and a leftist heap for the priority order, both
+ * updated by copying the path to the change and sharing the rest. The map
+ * is meant for a single writer and any number of readers: every write
+ * publishes a new immutable version, and {@link #snapshot()} hands out the
+ * current one in O(1) as a read-only map that later writes do not affect.
+ *
+ * <p>Lookups and writes take O(log n). A removed key stays in the heap
+ * until it reaches the top, where it is discarded; once such stale entries
+ * outnumber the live ones the heap is rebuilt in O(n). Keys are ranked by
+ * their natural order with the {@code null} key lowest.
+ */
+public class PersistentPriorityHashMap<K extends Comparable, V>
+        extends AbstractMap<K, V> {
+    private static final int HASH_SHIFT = 16;
+    private static final int BITS_PER_LEVEL = 5;
+    private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+    private static final int MIN_STALE_TO_REBUILD = 32;
+    private static final Version<?, ?> EMPTY =
+            new Version<>(null, null, 0, 0);
+
+    private volatile Version<K, V> version;
+    private final boolean readOnly;
+
+    public PersistentPriorityHashMap() {
+        this((Version<K, V>) EMPTY, false);
+    }
+
+    private PersistentPriorityHashMap(Version<K, V> version,
+                                      boolean readOnly) {
+        this.version = version;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Identity of a key's entry in the heap. A heap entry is live while the
+     * trie maps its key to a leaf carrying the same slot; replacing the
+     * value keeps the slot, removing the key drops it.
+     */
+    private static final class Slot<K> {
+        private final int hash;
+        private final K key;
+
+        private Slot(int hash, K key) {
+            this.hash = hash;
+            this.key = key;
+        }
+    }
+
+    private static final class Leaf<K extends Comparable, V>
+            implements Map.Entry<K, V> {
+        private final Slot<K> slot;
+        private final V value;
+
+        private Leaf(Slot<K> slot, V value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        public K getKey() {
+            return slot.key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V newValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return Objects.equals(slot.key, entry.getKey())
+                    && Objects.equals(value, entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(slot.key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return slot.key + "=" + value;
+        }
+    }
+
+    /**
+     * Trie node holding a child for every five-bit chunk of the hash that
+     * is set in its bitmap. A child is a leaf, a collision node or another
+     * bitmap node.
+     */
+    private static final class BitmapNode {
+        private final int bitmap;
+        private final Object[] children;
+
+        private BitmapNode(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+    }
+
+    private static final class CollisionNode {
+        private final int hash;
+        private final Leaf<?, ?>[] leaves;
+
+        private CollisionNode(int hash, Leaf<?, ?>[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+    }
+
+    private static final class HeapNode<K> {
+        private final Slot<K> slot;
+        private final HeapNode<K> left;
+        private final HeapNode<K> right;
+        private final int rank;
+
+        private HeapNode(Slot<K> slot, HeapNode<K> left, HeapNode<K> right) {
+            this.slot = slot;
+            if (rankOf(left) < rankOf(right)) {
+                this.left = right;
+                this.right = left;
+            } else {
+                this.left = left;
+                this.right = right;
+            }
+            rank = rankOf(this.right) + 1;
+        }
+
+        private static int rankOf(HeapNode<?> node) {
+            if (node == null) {
+                return 0;
+            }
+            return node.rank;
+        }
+    }
+
+    private static final class Version<K extends Comparable, V> {
+        private final Object root;
+        private final HeapNode<K> heap;
+        private final int size;
+        private final int staleCount;
+
+        private Version(Object root, HeapNode<K> heap, int size,
+                        int staleCount) {
+            this.root = root;
+            this.heap = heap;
+            this.size = size;
+            this.staleCount = staleCount;
+        }
+    }
+
+    /**
+     * Returns a read-only view of the current contents in O(1). The
+     * snapshot shares all structure with this map and is not affected by
+     * later writes, so it can be handed to other threads and read without
+     * locking.
+     */
+    public PersistentPriorityHashMap<K, V> snapshot() {
+        return new PersistentPriorityHashMap<>(version, true);
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    @Override
+    public int size() {
+        return version.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findLeaf(version.root, hash(key), key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        Leaf<K, V> leaf = findLeaf(version.root, hash(key), key);
+        if (leaf == null) {
+            return null;
+        }
+        return leaf.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        checkWritable();
+        Version<K, V> current = version;
+        int hash = hash(key);
+        Leaf<K, V> existing = findLeaf(current.root, hash, key);
+        if (existing != null) {
+            Object root = insert(current.root,
+                    new Leaf<>(existing.slot, value), 0);
+            version = new Version<>(root, current.heap, current.size,
+                    current.staleCount);
+            return existing.value;
+        }
+        Slot<K> slot = new Slot<>(hash, key);
+        Object root = insert(current.root, new Leaf<>(slot, value), 0);
+        HeapNode<K> heap = merge(current.heap,
+                new HeapNode<>(slot, null, null));
+        version = new Version<>(root, heap, current.size + 1,
+                current.staleCount);
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        checkWritable();
+        Version<K, V> current = version;
+        int hash = hash(key);
+        Leaf<K, V> existing = findLeaf(current.root, hash, key);
+        if (existing == null) {
+            return null;
+        }
+        Object root = remove(current.root, hash, key, 0);
+        version = normalize(root, current.heap, current.size - 1,
+                current.staleCount + 1);
+        return existing.value;
+    }
+
+    @Override
+    public void clear() {
+        checkWritable();
+        version = (Version<K, V>) EMPTY;
+    }
+
+    public V peekValueWithPriorityKey() {
+        Version<K, V> current = version;
+        if (current.heap == null) {
+            return null;
+        }
+        Slot<K> top = current.heap.slot;
+        Leaf<K, V> leaf = findLeaf(current.root, top.hash, top.key);
+        return leaf.value;
+    }
+
+    public V pollValueWithPriorityKey() {
+        checkWritable();
+        Version<K, V> current = version;
+        if (current.heap == null) {
+            return null;
+        }
+        Slot<K> top = current.heap.slot;
+        Leaf<K, V> leaf = findLeaf(current.root, top.hash, top.key);
+        Object root = remove(current.root, top.hash, top.key, 0);
+        version = normalize(root,
+                merge(current.heap.left, current.heap.right),
+                current.size - 1, current.staleCount);
+        return leaf.value;
+    }
+
+    /**
+     * Returns an iterator over the entries of the current version from the
+     * highest priority key to the lowest. Reading the first k entries costs
+     * O(k log k); later writes to this map do not affect the iteration.
+     */
+    public Iterator<Entry<K, V>> priorityIterator() {
+        return new PriorityIterator(version);
+    }
+
+    /**
+     * Returns the entries of the current version in trie order. The set and
+     * its iterators are read-only and unaffected by later writes.
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new EntrySet(version);
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Snapshot is read-only.");
+        }
+    }
+
+    private static int hash(Object key) {
+        if (key == null) {
+            return 0;
+        }
+        int hash = key.hashCode();
+        return hash ^ (hash >>> HASH_SHIFT);
+    }
+
+    private static int compareSlots(Slot<? extends Comparable> firstSlot,
+                                    Slot<? extends Comparable> secondSlot) {
+        return PriorityHashMap.compareKeys(firstSlot.key, secondSlot.key);
+    }
+
+    /**
+     * Drops the stale entries from the top of the heap, so that the top of
+     * every published version is live, and rebuilds the heap once stale
+     * entries outnumber the live ones.
+     */
+    private static <K extends Comparable, V> Version<K, V> normalize(
+            Object root, HeapNode<K> heap, int size, int staleCount) {
+        HeapNode<K> top = heap;
+        int stale = staleCount;
+        while (top != null && !isLive(root, top.slot)) {
+            top = merge(top.left, top.right);
+            stale--;
+        }
+        if (stale > size && stale >= MIN_STALE_TO_REBUILD) {
+            top = buildHeap(root);
+            stale = 0;
+        }
+        return new Version<>(root, top, size, stale);
+    }
+
+    private static boolean isLive(Object root, Slot<?> slot) {
+        Leaf<?, ?> leaf = findLeaf(root, slot.hash, slot.key);
+        return leaf != null && leaf.slot == slot;
+    }
+
+    private static <K extends Comparable> HeapNode<K> merge(
+            HeapNode<K> first, HeapNode<K> second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        if (compareSlots(first.slot, second.slot) < 0) {
+            return new HeapNode<>(second.slot, second.left,
+                    merge(second.right, first));
+        }
+        return new HeapNode<>(first.slot, first.left,
+                merge(first.right, second));
+    }
+
+    /**
+     * Builds a heap of the live entries in O(n) by merging single-entry
+     * heaps pairwise, level by level.
+     */
+    private static <K extends Comparable> HeapNode<K> buildHeap(Object root) {
+        ArrayDeque<HeapNode<K>> heaps = new ArrayDeque<>();
+        Iterator<Leaf<K, ?>> leaves = new TrieIterator<>(root);
+        while (leaves.hasNext()) {
+            heaps.add(new HeapNode<>(leaves.next().slot, null, null));
+        }
+        while (heaps.size() > 1) {
+            heaps.add(merge(heaps.poll(), heaps.poll()));
+        }
+        return heaps.poll();
+    }
+
+    private static <K extends Comparable, V> Leaf<K, V> findLeaf(
+            Object root, int hash, Object key) {
+        Object node = root;
+        int shift = 0;
+        for (;;) {
+            if (node instanceof BitmapNode) {
+                BitmapNode bitmapNode = (BitmapNode) node;
+                int bit = bitFor(hash, shift);
+                if ((bitmapNode.bitmap & bit) == 0) {
+                    return null;
+                }
+                node = bitmapNode.children[positionOf(bitmapNode, bit)];
+                shift += BITS_PER_LEVEL;
+            } else if (node instanceof Leaf) {
+                Leaf<K, V> leaf = (Leaf<K, V>) node;
+                if (leaf.slot.hash == hash
+                        && Objects.equals(leaf.slot.key, key)) {
+                    return leaf;
+                }
+                return null;
+            } else if (node instanceof CollisionNode) {
+                CollisionNode collisionNode = (CollisionNode) node;
+                if (collisionNode.hash != hash) {
+                    return null;
+                }
+                int index = indexOf(collisionNode, key);
+                if (index < 0) {
+                    return null;
+                }
+                return (Leaf<K, V>) collisionNode.leaves[index];
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of {@code node} with {@code leaf} added, replacing the
+     * leaf of an equal key.
+     */
+    private static Object insert(Object node, Leaf<?, ?> leaf, int shift) {
+        int hash = leaf.slot.hash;
+        if (node == null) {
+            return leaf;
+        }
+        if (node instanceof BitmapNode) {
+            BitmapNode bitmapNode = (BitmapNode) node;
+            int bit = bitFor(hash, shift);
+            int position = positionOf(bitmapNode, bit);
+            Object[] children = bitmapNode.children;
+            if ((bitmapNode.bitmap & bit) == 0) {
+                Object[] newChildren = new Object[children.length + 1];
+                System.arraycopy(children, 0, newChildren, 0, position);
+                newChildren[position] = leaf;
+                System.arraycopy(children, position, newChildren,
+                        position + 1, children.length - position);
+                return new BitmapNode(bitmapNode.bitmap | bit, newChildren);
+            }
+            Object[] newChildren = children.clone();
+            newChildren[position] = insert(children[position], leaf,
+                    shift + BITS_PER_LEVEL);
+            return new BitmapNode(bitmapNode.bitmap, newChildren);
+        }
+        int nodeHash = hashOf(node);
+        if (nodeHash != hash) {
+            return join(node, nodeHash, leaf, hash, shift);
+        }
+        if (node instanceof Leaf) {
+            Leaf<?, ?> existing = (Leaf<?, ?>) node;
+            if (Objects.equals(existing.slot.key, leaf.slot.key)) {
+                return leaf;
+            }
+            return new CollisionNode(hash, new Leaf<?, ?>[] {existing, leaf});
+        }
+        CollisionNode collisionNode = (CollisionNode) node;
+        int index = indexOf(collisionNode, leaf.slot.key);
+        Leaf<?, ?>[] leaves;
+        if (index < 0) {
+            leaves = Arrays.copyOf(collisionNode.leaves,
+                    collisionNode.leaves.length + 1);
+            leaves[leaves.length - 1] = leaf;
+        } else {
+            leaves = collisionNode.leaves.clone();
+            leaves[index] = leaf;
+        }
+        return new CollisionNode(hash, leaves);
+    }
+
+    /**
+     * Builds the smallest subtrie holding two nodes of different hashes.
+     */
+    private static Object join(Object first, int firstHash, Object second,
+                               int secondHash, int shift) {
+        int firstBit = bitFor(firstHash, shift);
+        int secondBit = bitFor(secondHash, shift);
+        if (firstBit == secondBit) {
+            return new BitmapNode(firstBit, new Object[] {join(first,
+                    firstHash, second, secondHash, shift + BITS_PER_LEVEL)});
+        }
+        if (Integer.compareUnsigned(firstBit, secondBit) < 0) {
+            return new BitmapNode(firstBit | secondBit,
+                    new Object[] {first, second});
+        }
+        return new BitmapNode(firstBit | secondBit,
+                new Object[] {second, first});
+    }
+
+    /**
+     * Returns a copy of {@code node} without the leaf of {@code key}, or
+     * {@code null} if nothing is left. A bitmap node left with a single
+     * leaf or collision node collapses into it.
+     */
+    private static Object remove(Object node, int hash, Object key,
+                                 int shift) {
+        if (node instanceof Leaf) {
+            return null;
+        }
+        if (node instanceof CollisionNode) {
+            CollisionNode collisionNode = (CollisionNode) node;
+            int index = indexOf(collisionNode, key);
+            Leaf<?, ?>[] leaves = collisionNode.leaves;
+            if (leaves.length == 2) {
+                return leaves[1 - index];
+            }
+            Leaf<?, ?>[] newLeaves = new Leaf<?, ?>[leaves.length - 1];
+            System.arraycopy(leaves, 0, newLeaves, 0, index);
+            System.arraycopy(leaves, index + 1, newLeaves, index,
+                    newLeaves.length - index);
+            return new CollisionNode(hash, newLeaves);
+        }
+        BitmapNode bitmapNode = (BitmapNode) node;
+        int bit = bitFor(hash, shift);
+        int position = positionOf(bitmapNode, bit);
+        Object[] children = bitmapNode.children;
+        Object child = remove(children[position], hash, key,
+                shift + BITS_PER_LEVEL);
+        if (child == null) {
+            if (children.length == 1) {
+                return null;
+            }
+            if (children.length == 2
+                    && !(children[1 - position] instanceof BitmapNode)) {
+                return children[1 - position];
+            }
+            Object[] newChildren = new Object[children.length - 1];
+            System.arraycopy(children, 0, newChildren, 0, position);
+            System.arraycopy(children, position + 1, newChildren, position,
+                    newChildren.length - position);
+            return new BitmapNode(bitmapNode.bitmap & ~bit, newChildren);
+        }
+        if (children.length == 1 && !(child instanceof BitmapNode)) {
+            return child;
+        }
+        Object[] newChildren = children.clone();
+        newChildren[position] = child;
+        return new BitmapNode(bitmapNode.bitmap, newChildren);
+    }
+
+    private static int hashOf(Object node) {
+        if (node instanceof Leaf) {
+            return ((Leaf<?, ?>) node).slot.hash;
+        }
+        return ((CollisionNode) node).hash;
+    }
+
+    private static int bitFor(int hash, int shift) {
+        return 1 << ((hash >>> shift) & LEVEL_MASK);
+    }
+
+    private static int positionOf(BitmapNode node, int bit) {
+        return Integer.bitCount(node.bitmap & (bit - 1));
+    }
+
+    private static int indexOf(CollisionNode node, Object key) {
+        for (int index = 0; index < node.leaves.length; index++) {
+            if (Objects.equals(node.leaves[index].slot.key, key)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Walks the leaves of a trie depth first with an explicit stack.
+     */
+    private static final class TrieIterator<K extends Comparable, V, T>
+            implements Iterator<T> {
+        private final ArrayDeque<Object> pending = new ArrayDeque<>();
+        private final ArrayDeque<Leaf<?, ?>> leaves = new ArrayDeque<>();
+
+        private TrieIterator(Object root) {
+            if (root != null) {
+                pending.push(root);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (leaves.isEmpty() && !pending.isEmpty()) {
+                Object node = pending.pop();
+                if (node instanceof Leaf) {
+                    leaves.add((Leaf<?, ?>) node);
+                } else if (node instanceof CollisionNode) {
+                    leaves.addAll(Arrays.asList(
+                            ((CollisionNode) node).leaves));
+                } else {
+                    Object[] children = ((BitmapNode) node).children;
+                    for (int index = children.length - 1; index >= 0;
+                         index--) {
+                        pending.push(children[index]);
+                    }
+                }
+            }
+            return !leaves.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return (T) leaves.poll();
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+        private final Version<K, V> iteratedVersion;
+
+        private EntrySet(Version<K, V> iteratedVersion) {
+            this.iteratedVersion = iteratedVersion;
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new TrieIterator<>(iteratedVersion.root);
+        }
+
+        @Override
+        public int size() {
+            return iteratedVersion.size;
+        }
+    }
+
+    /**
+     * Walks the heap of a version in order by keeping the candidate heap
+     * nodes in a priority queue, skipping the stale ones.
+     */
+    private final class PriorityIterator implements Iterator<Entry<K, V>> {
+        private final Object root;
+        private final PriorityQueue<HeapNode<K>> candidates =
+                new PriorityQueue<>((firstNode, secondNode) ->
+                        compareSlots(secondNode.slot, firstNode.slot));
+        private Leaf<K, V> nextLeaf;
+
+        private PriorityIterator(Version<K, V> iteratedVersion) {
+            root = iteratedVersion.root;
+            if (iteratedVersion.heap != null) {
+                candidates.add(iteratedVersion.heap);
+            }
+            advance();
+        }
+
+        private void advance() {
+            nextLeaf = null;
+            while (nextLeaf == null && !candidates.isEmpty()) {
+                HeapNode<K> node = candidates.poll();
+                if (node.left != null) {
+                    candidates.add(node.left);
+                }
+                if (node.right != null) {
+                    candidates.add(node.right);
+                }
+                Leaf<K, V> leaf = findLeaf(root, node.slot.hash,
+                        node.slot.key);
+                if (leaf != null && leaf.slot == node.slot) {
+                    nextLeaf = leaf;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextLeaf != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (nextLeaf == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf<K, V> leaf = nextLeaf;
+            advance();
+            return leaf;
+        }
+    }
+}
@@ -1,41 +1,59 @@
 package ua.yandex.prioritymap;
 
-import java.lang.reflect.Array;
-
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public class PriorityHashMap<K extends Comparable, V> implements Map<K, V> {
     private static final int DEFAULT_INITIAL_CAPACITY = 16;
     private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int MIN_RESIZE_STEP = 4;
+    private static final int HASH_SHIFT = 16;
+    private static final int TREEIFY_THRESHOLD = 8;
+    private static final int UNTREEIFY_THRESHOLD = 6;
+    private static final int MIN_TREEIFY_CAPACITY = 64;
+    private static final int HISTOGRAM_SIZE = TREEIFY_THRESHOLD + 1;
     private final int initialCapacity;
     private final float loadFactor;
+    private final int resizeStep;
     private Node<K, V>[] table;
+    private Node<K, V>[] oldTable;
+    private int transferIndex;
+    private int threshold;
+    private Node<K, V>[] heap;
     private int size;
-    private Comparator<Entry<K, V>> entryComparator =
-            (firstEntry, secondEntry) -> {
-                K firstKey = firstEntry.getKey();
-                K secondKey = secondEntry.getKey();
-                if (firstKey == null) {
-                    return -1;
-                }
-                if (secondKey == null) {
-                    return 1;
-                }
-                return firstKey.compareTo(secondKey);
-            };
+    private int modCount;
+    private StatisticsCounter statistics;
+    private int maximumSize = Integer.MAX_VALUE;
+    private MinHeap<K, V> minHeap;
+    private EvictionListener<? super K, ? super V> evictionListener;
+    private final Comparator<? super Entry<K, V>> entryComparator;
+    private final boolean customPriority;
+    private OrderIndex<K, V> orderIndex;
+    private boolean nodeRecycling;
+    private Node<K, V> freeNodes;
 
     static class Node<K extends Comparable, V> implements Map.Entry<K, V> {
+        private int hash;
         private K key;
         private V value;
         private Node<K, V> nextNode;
+        private int heapIndex;
+        private int minHeapIndex;
 
-        private Node(K key, V value, Node<K, V> nextNode) {
+        Node(int hash, K key, V value, Node<K, V> nextNode) {
+            this.hash = hash;
             this.key = key;
             this.value = value;
             this.nextNode = nextNode;
@@ -45,6 +63,34 @@ public class PriorityHashMap<K extends Comparable, V> implements Map<K, V> {
             return nextNode;
         }
 
+        int hash() {
+            return hash;
+        }
+
+        Node<K, V> next() {
+            return nextNode;
+        }
+
+        void setNext(Node<K, V> next) {
+            nextNode = next;
+        }
+
+        int heapIndex() {
+            return heapIndex;
+        }
+
+        void setHeapIndex(int index) {
+            heapIndex = index;
+        }
+
+        int minHeapIndex() {
+            return minHeapIndex;
+        }
+
+        void setMinHeapIndex(int index) {
+            minHeapIndex = index;
+        }
+
         @Override
         public K getKey() {
             return key;
@@ -61,6 +107,26 @@ public class PriorityHashMap<K extends Comparable, V> implements Map<K, V> {
             value = newValue;
             return oldValue;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, entry.getKey())
+                    && Objects.equals(value, entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
     }
 
     public PriorityHashMap() {
@@ -72,6 +138,30 @@ public class PriorityHashMap<K extends Comparable, V> implements Map<K, V> {
     }
 
     public PriorityHashMap(int initialCapacity, float loadFactor) {
+        this(initialCapacity, loadFactor, null);
+    }
+
+    public PriorityHashMap(
+            Comparator<? super Entry<K, V>> priorityComparator) {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR,
+                priorityComparator);
+    }
+
+    /**
+     * Creates a map whose priority order is {@code priorityComparator}: the
+     * entry it ranks greatest is polled first. A {@code null} comparator
+     * ranks entries by the natural order of their keys, with the
+     * {@code null} key lowest.
+     *
+     * <p>When the comparator reads values, {@link #put(Comparable, Object)}
+     * and {@link #replaceAll(BiFunction)} reposition the entries they
+     * change. Changing a value through {@link Entry#setValue(Object)}, or
+     * mutating state the comparator reads, does not; call
+     * {@link #updatePriority(Object)} afterwards.
+     */
+    public PriorityHashMap(int initialCapacity, float loadFactor,
+                           Comparator<? super Entry<K, V>>
+                                   priorityComparator) {
         if (initialCapacity < 0) {
             throw new IllegalArgumentException(
                     "Initial capacity must be positive or zero.");
@@ -82,22 +172,75 @@ public class PriorityHashMap<K extends Comparable, V> implements Map<K, V> {
         }
         this.initialCapacity = initialCapacity;
         this.loadFactor = loadFactor;
-        table = new Node[initialCapacity];
+        resizeStep = Math.max(MIN_RESIZE_STEP,
+                (int) Math.ceil(2 / loadFactor));
+        table = new Node[tableSizeFor(initialCapacity)];
+        threshold = thresholdFor(table.length);
+        heap = new Node[initialCapacity];
         size = 0;
+        if (priorityComparator == null) {
+            entryComparator = PriorityHashMap::compareByKey;
+            customPriority = false;
+        } else {
+            entryComparator = priorityComparator;
+            customPriority = true;
+        }
+    }
+
+    /**
+     * Returns a priority comparator for the constructors that ranks entries
+     * by a priority computed from their values.
+     */
+    public static <K, V, P extends Comparable<? super P>>
+            Comparator<Entry<K, V>> valuePriority(
+                    Function<? super V, ? extends P> priorityFunction) {
+        return (firstEntry, secondEntry) -> priorityFunction
+                .apply(firstEntry.getValue())
+                .compareTo(priorityFunction.apply(secondEntry.getValue()));
+    }
+
+    private static int compareByKey(
+            Entry<? extends Comparable, ?> firstEntry,
+            Entry<? extends Comparable, ?> secondEntry) {
+        return compareKeys(firstEntry.getKey(), secondEntry.getKey());
+    }
+
+    static int compareKeys(Comparable firstKey, Comparable secondKey) {
+        if (firstKey == secondKey) {
+            return 0;
+        }
+        if (firstKey == null) {
+            return -1;
+        }
+        if (secondKey == null) {
+            return 1;
+        }
+        return firstKey.compareTo(secondKey);
     }
 
-    private int getInsertPosition(Object key) {
+    private static int tableSizeFor(int capacity) {
+        int tableSize = 1;
+        while (tableSize < capacity && tableSize < MAXIMUM_CAPACITY) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+
+    private static int hash(Object key) {
         if (key == null) {
             return 0;
         }
         int hash = key.hashCode();
-        int position = hash % table.length;
-        if (position < 0) {
-            position = -position;
-        }
-        return position;
+        return hash ^ (hash >>> HASH_SHIFT);
+    }
+
+    private static int indexFor(int hash, int tableLength) {
+        return hash & (tableLength - 1);
     }
 
+    private int thresholdFor(int tableLength) {
+        return Math.max(1, (int) (tableLength * loadFactor));
+    }
 
     @Override
     public int size() {
@@ -114,14 +257,58 @@ public class PriorityHashMap<K extends Comparable, V> implements Map<K, V> {
         return findByKey(key) != null;
     }
 
-    private Node<K, V> findByKey(Object key) {
+    Node<K, V> findByKey(Object key) {
+        return findExisting(hash(key), key);
+    }
+
+    private Node<K, V> findExisting(int hash, Object key) {
         if (size == 0) {
             return null;
         }
-        Node<K, V> currentNode;
-        currentNode = table[getInsertPosition(key)];
-        while ((currentNode != null)
-                && !(Objects.equals(currentNode.key, key))) {
+        return findNode(hash, key);
+    }
+
+    private Node<K, V> findNode(int hash, Object key) {
+        if (statistics != null) {
+            statistics.recordLookup(countProbes(hash, key));
+        }
+        if (oldTable != null) {
+            int oldPosition = indexFor(hash, oldTable.length);
+            if (oldPosition >= transferIndex) {
+                Node<K, V> oldNode =
+                        findInBucket(oldTable[oldPosition], hash, key);
+                if (oldNode != null) {
+                    return oldNode;
+                }
+            }
+        }
+        return findInBucket(table[indexFor(hash, table.length)], hash, key);
+    }
+
+    private int countProbes(int hash, Object key) {
+        int probes = 0;
+        if (oldTable != null) {
+            int oldPosition = indexFor(hash, oldTable.length);
+            if (oldPosition >= transferIndex) {
+                probes = PriorityHashMapStatistics.countProbes(
+                        oldTable[oldPosition], hash, key);
+                if (findInBucket(oldTable[oldPosition], hash, key) != null) {
+                    return probes;
+                }
+            }
+        }
+        return probes + PriorityHashMapStatistics.countProbes(
+                table[indexFor(hash, table.length)], hash, key);
+    }
+
+    private static <K extends Comparable, V> Node<K, V> findInBucket(
+            Node<K, V> bucket, int hash, Object key) {
+        if (bucket instanceof TreeBin) {
+            return ((TreeBin<K, V>) bucket).find(hash, key);
+        }
+        Node<K, V> currentNode = bucket;
+        while (currentNode != null && !(currentNode.hash == hash
+                && Objects.equals(currentNode.key, key))) {
             currentNode = currentNode.nextNode;
         }
         return currentNode;
@@ -129,12 +316,16 @@ public class PriorityHashMap<K extends Comparable, V> implements Map<K, V> {
 
     @Override
     public boolean containsValue(Object value) {
-        Node<K, V> currentNode;
-        for (Node<K, V> node : table) {
-            currentNode = node;
+        return (oldTable != null && containsValue(oldTable, value))
+                || containsValue(table, value);
+    }
+
+    private static boolean containsValue(Node<?, ?>[] nodes, Object value) {
+        Node<?, ?> currentNode;
+        for (Node<?, ?> node : nodes) {
+            currentNode = firstNode(node);
             while (currentNode != null) {
-                V nodeValue = currentNode.value;
-                if (Objects.equals(value, nodeValue)) {
+                if (Objects.equals(value, currentNode.value)) {
                     return true;
                 }
                 currentNode = currentNode.nextNode;
@@ -158,327 +349,1144 @@ public class PriorityHashMap<K extends Comparable, V> implements Map<K, V> {
     }
 
     private V putSingleValue(K key, V value) {
-        Node<K, V> insertionNode = findByKey(key);
-        V oldValue = null;
+        int hash = hash(key);
+        Node<K, V> insertionNode = findExisting(hash, key);
         if (insertionNode == null) {
-            if (size >= table.length) {
-                extendTable();
-            }
-            int position = this.getInsertPosition(key);
-            Node<K, V> nextNode = table[position];
-            table[position] = new Node<>(key, value, nextNode);
-            size++;
+            addEntry(hash, key, value);
             return null;
         }
-        oldValue = insertionNode.value;
-        insertionNode.value = value;
+        return replaceValue(insertionNode, value);
+    }
+
+    /**
+     * Adds a key that is known to be absent. A full bounded map evicts its
+     * lowest-priority entry for it, or drops the new entry instead.
+     */
+    private void addEntry(int hash, K key, V value) {
+        Node<K, V> newNode = newNode(hash, key, value);
+        if (size < maximumSize) {
+            insertNode(newNode);
+            return;
+        }
+        if (size == 0
+                || entryComparator.compare(newNode, minHeap.peek()) <= 0) {
+            notifyEviction(newNode);
+            recycle(newNode);
+            return;
+        }
+        Node<K, V> lowestNode = minHeap.peek();
+        removeNode(lowestNode);
+        insertNode(newNode);
+        notifyEviction(lowestNode);
+        recycle(lowestNode);
+    }
+
+    private V replaceValue(Node<K, V> node, V value) {
+        V oldValue = node.value;
+        node.value = value;
+        if (customPriority) {
+            reposition(node);
+        }
         return oldValue;
     }
 
+    private void insertNode(Node<K, V> newNode) {
+        if (size >= threshold) {
+            extendTable();
+        }
+        addToHeap(newNode);
+        if (orderIndex != null) {
+            orderIndex.add(newNode);
+        }
+        linkNode(table, newNode);
+        transferBuckets(resizeStep);
+    }
+
+    private void notifyEviction(Node<K, V> node) {
+        if (evictionListener != null) {
+            evictionListener.onEviction(node.key, node.value);
+        }
+    }
+
+    /**
+     * Starts doubling the table. Existing nodes stay in the old table and
+     * are relinked into the new one a few buckets at a time by
+     * {@link #transferBuckets(int)}; until then lookups check both tables.
+     */
     private void extendTable() {
-        int newSize = (int) ((table.length + 1) / loadFactor);
-        Node<K, V>[] oldTable = table;
-        table = new Node[newSize];
-        size = 0;
-        Node<K, V> nextNode;
-        for (Node<K, V> node : oldTable) {
-            nextNode = node;
-            while (nextNode != null) {
-                putSingleValue(nextNode.key, nextNode.value);
-                nextNode = nextNode.nextNode;
+        if (oldTable != null) {
+            transferBuckets(oldTable.length);
+        }
+        if (table.length >= MAXIMUM_CAPACITY) {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+        long startTime = 0;
+        if (statistics != null) {
+            startTime = System.nanoTime();
+        }
+        oldTable = table;
+        transferIndex = 0;
+        table = new Node[oldTable.length * 2];
+        threshold = thresholdFor(table.length);
+        if (statistics != null) {
+            statistics.recordResizeWork(System.nanoTime() - startTime);
+        }
+    }
+
+    private void transferBuckets(int bucketCount) {
+        if (oldTable == null) {
+            return;
+        }
+        if (statistics == null) {
+            moveBuckets(bucketCount);
+            return;
+        }
+        long startTime = System.nanoTime();
+        boolean finished = moveBuckets(bucketCount);
+        statistics.recordResizeWork(System.nanoTime() - startTime);
+        if (finished) {
+            statistics.recordResize();
+        }
+    }
+
+    private boolean moveBuckets(int bucketCount) {
+        int end = Math.min(oldTable.length, transferIndex + bucketCount);
+        while (transferIndex < end) {
+            Node<K, V> currentNode = firstNode(oldTable[transferIndex]);
+            oldTable[transferIndex] = null;
+            while (currentNode != null) {
+                Node<K, V> nextNode = currentNode.nextNode;
+                linkNode(table, currentNode);
+                currentNode = nextNode;
             }
+            transferIndex++;
+        }
+        if (transferIndex == oldTable.length) {
+            oldTable = null;
+            return true;
+        }
+        return false;
+    }
+
+    static <K extends Comparable, V> Node<K, V> firstNode(
+            Node<K, V> bucket) {
+        if (bucket instanceof TreeBin) {
+            return ((TreeBin<K, V>) bucket).getFirst();
+        }
+        return bucket;
+    }
+
+    /**
+     * Links a node that is already in the heap into its bucket of
+     * {@code nodes}, treeifying the bucket once its chain gets long.
+     */
+    private void linkNode(Node<K, V>[] nodes, Node<K, V> node) {
+        int position = indexFor(node.hash, nodes.length);
+        Node<K, V> bucket = nodes[position];
+        if (bucket instanceof TreeBin) {
+            ((TreeBin<K, V>) bucket).add(toTreeNode(node));
+            return;
+        }
+        node.nextNode = bucket;
+        nodes[position] = node;
+        if (nodes.length < MIN_TREEIFY_CAPACITY) {
+            return;
+        }
+        int chainLength = 0;
+        Node<K, V> currentNode = node;
+        while (currentNode != null && chainLength < TREEIFY_THRESHOLD) {
+            chainLength++;
+            currentNode = currentNode.nextNode;
+        }
+        if (chainLength >= TREEIFY_THRESHOLD) {
+            treeify(nodes, position);
         }
     }
 
+    private void treeify(Node<K, V>[] nodes, int position) {
+        TreeBin<K, V> bin = new TreeBin<>();
+        Node<K, V> currentNode = nodes[position];
+        while (currentNode != null) {
+            Node<K, V> nextNode = currentNode.nextNode;
+            bin.add(toTreeNode(currentNode));
+            currentNode = nextNode;
+        }
+        nodes[position] = bin;
+    }
+
+    private TreeBin.TreeNode<K, V> toTreeNode(Node<K, V> node) {
+        if (node instanceof TreeBin.TreeNode) {
+            return (TreeBin.TreeNode<K, V>) node;
+        }
+        TreeBin.TreeNode<K, V> treeNode =
+                new TreeBin.TreeNode<>(node.hash, node.key, node.value);
+        treeNode.setHeapIndex(node.heapIndex());
+        heap[node.heapIndex] = treeNode;
+        if (minHeap != null) {
+            minHeap.replace(node, treeNode);
+        }
+        if (orderIndex != null) {
+            orderIndex.replace(treeNode);
+        }
+        return treeNode;
+    }
 
     @Override
     public V remove(Object key) {
-        if (size == 0) {
+        Node<K, V> node = findByKey(key);
+        if (node == null) {
             return null;
         }
-        Node<K, V> currentNode;
-        int position = getInsertPosition(key);
-        currentNode = table[position];
-        if (currentNode == null) {
-            return null;
+        return removeEntry(node);
+    }
+
+    /**
+     * Copies all mappings of {@code m} into this map. The table is grown
+     * once for the combined size up front. When {@code m} is at least as
+     * large as this map, the new keys are appended to the heap unsorted and
+     * the heap is rebuilt in O(n) instead of sifting every key in; keys of a
+     * source known to hold distinct keys are then not even looked up if this
+     * map is empty, and the heap of a {@code PriorityHashMap} source with the
+     * same priority order is copied as it is.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (m == null || m.isEmpty()) {
+            return;
+        }
+        int incomingCount = m.size();
+        ensureCapacity((int) Math.min(Integer.MAX_VALUE,
+                (long) size + incomingCount));
+        if (incomingCount < size) {
+            for (Entry<? extends K, ? extends V> nextEntry : m.entrySet()) {
+                putSingleValue(nextEntry.getKey(), nextEntry.getValue());
+            }
+            return;
+        }
+        if (size == 0 && m instanceof PriorityHashMap
+                && hasSamePriorityOrder((PriorityHashMap<?, ?>) m)) {
+            copyHeap((PriorityHashMap<? extends K, ? extends V>) m);
+        } else {
+            bulkLoad(m);
+        }
+        trimToMaximumSize();
+        transferBuckets(resizeStep);
+    }
+
+    private boolean hasSamePriorityOrder(PriorityHashMap<?, ?> source) {
+        return source.customPriority == customPriority
+                && source.entryComparator == entryComparator;
+    }
+
+    private void copyHeap(PriorityHashMap<? extends K, ? extends V> source) {
+        for (int heapIndex = 0; heapIndex < source.size; heapIndex++) {
+            Node<? extends K, ? extends V> node = source.heap[heapIndex];
+            appendNode(node.hash, node.key, node.value);
         }
-        if (Objects.equals(currentNode.key, key)) {
-            size--;
-            table[position] = currentNode.nextNode;
-            return currentNode.value;
+        if (minHeap != null) {
+            minHeap.heapify();
         }
-        Node<K, V> parent;
-        parent = currentNode;
-        currentNode = currentNode.nextNode;
-        return removeChild(key, parent, currentNode);
     }
 
-    private V removeChild(Object key, Node<K, V> startParent,
-                          Node<K, V> startChild) {
-        Node<K, V> parent = startParent;
-        Node<K, V> child = startChild;
-        for (;;) {
-            if (child == null) {
-                return null;
+    private void bulkLoad(Map<? extends K, ? extends V> m) {
+        boolean distinctKeys = size == 0 && hasDistinctKeys(m);
+        for (Entry<? extends K, ? extends V> nextEntry : m.entrySet()) {
+            K key = nextEntry.getKey();
+            int hash = hash(key);
+            Node<K, V> node = null;
+            if (!distinctKeys) {
+                node = findNode(hash, key);
             }
-            if (Objects.equals(child.key, key)) {
-                size--;
-                parent.nextNode = child.nextNode;
-                return child.value;
+            if (node == null) {
+                appendNode(hash, key, nextEntry.getValue());
+            } else {
+                node.value = nextEntry.getValue();
             }
-            parent = child;
-            child = child.nextNode;
         }
+        heapify();
+    }
+
+    /**
+     * Tells whether the keys of {@code m} are known to be distinct by
+     * {@code equals}, which a map with identity or comparator semantics
+     * does not guarantee.
+     */
+    private static boolean hasDistinctKeys(Map<?, ?> m) {
+        return m instanceof PriorityHashMap || m instanceof HashMap
+                || m instanceof OpenAddressingPriorityHashMap;
     }
 
+    /*
+     * The Java 8 defaults below are overridden so that each of them looks
+     * the key up once and then works on the node it found. A function that
+     * modifies the map makes them throw ConcurrentModificationException.
+     */
+
     @Override
-    public void putAll(Map<? extends K, ? extends V> m) {
-        if (m == null) {
-            return;
+    public V getOrDefault(Object key, V defaultValue) {
+        Node<K, V> node = findByKey(key);
+        if (node == null) {
+            return defaultValue;
         }
-        for (Entry<? extends K, ? extends V> nextEntry : m.entrySet()) {
-            putSingleValue(nextEntry.getKey(), nextEntry.getValue());
+        return node.value;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        int hash = hash(key);
+        Node<K, V> node = findExisting(hash, key);
+        if (node == null) {
+            addEntry(hash, key, value);
+            return null;
         }
+        if (node.value == null) {
+            return replaceValue(node, value);
+        }
+        return node.value;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        Node<K, V> node = findByKey(key);
+        if (node == null || !Objects.equals(node.value, value)) {
+            return false;
+        }
+        removeEntry(node);
+        return true;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Node<K, V> node = findByKey(key);
+        if (node == null || !Objects.equals(node.value, oldValue)) {
+            return false;
+        }
+        replaceValue(node, newValue);
+        return true;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Node<K, V> node = findByKey(key);
+        if (node == null) {
+            return null;
+        }
+        return replaceValue(node, value);
     }
 
+    @Override
+    public V computeIfAbsent(K key,
+                             Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        int hash = hash(key);
+        Node<K, V> node = findExisting(hash, key);
+        if (node != null && node.value != null) {
+            return node.value;
+        }
+        int expectedModCount = modCount;
+        V value = mappingFunction.apply(key);
+        checkModCount(expectedModCount);
+        if (value == null) {
+            return null;
+        }
+        if (node == null) {
+            addEntry(hash, key, value);
+        } else {
+            replaceValue(node, value);
+        }
+        return value;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V,
+            ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        Node<K, V> node = findByKey(key);
+        if (node == null || node.value == null) {
+            return null;
+        }
+        int expectedModCount = modCount;
+        return remap(node, remappingFunction.apply(key, node.value),
+                expectedModCount);
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V,
+            ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        int hash = hash(key);
+        Node<K, V> node = findExisting(hash, key);
+        int expectedModCount = modCount;
+        if (node != null) {
+            return remap(node, remappingFunction.apply(key, node.value),
+                    expectedModCount);
+        }
+        V value = remappingFunction.apply(key, null);
+        checkModCount(expectedModCount);
+        if (value != null) {
+            addEntry(hash, key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V,
+            ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        int hash = hash(key);
+        Node<K, V> node = findExisting(hash, key);
+        if (node == null) {
+            addEntry(hash, key, value);
+            return value;
+        }
+        if (node.value == null) {
+            replaceValue(node, value);
+            return value;
+        }
+        int expectedModCount = modCount;
+        return remap(node, remappingFunction.apply(node.value, value),
+                expectedModCount);
+    }
+
+    /**
+     * Stores the result of a remapping function in {@code node}, or removes
+     * the node if the result is {@code null}.
+     */
+    private V remap(Node<K, V> node, V value, int expectedModCount) {
+        checkModCount(expectedModCount);
+        if (value == null) {
+            removeEntry(node);
+        } else {
+            replaceValue(node, value);
+        }
+        return value;
+    }
+
+    private V removeEntry(Node<K, V> node) {
+        V value = node.value;
+        removeNode(node);
+        transferBuckets(resizeStep);
+        recycle(node);
+        return value;
+    }
+
+    private void checkModCount(int expectedModCount) {
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Removes all entries. With node recycling enabled the table and heap are
+     * emptied in place, keeping the capacity the map has grown to, and the
+     * nodes go to the free list; otherwise the map shrinks back to its
+     * initial capacity.
+     */
     @Override
     public void clear() {
-        table = new Node[initialCapacity];
+        if (nodeRecycling) {
+            clearInPlace();
+            return;
+        }
+        table = new Node[tableSizeFor(initialCapacity)];
+        oldTable = null;
+        transferIndex = 0;
+        threshold = thresholdFor(table.length);
+        heap = new Node[initialCapacity];
+        if (minHeap != null) {
+            minHeap = new MinHeap<>(entryComparator, initialCapacity);
+        }
+        if (orderIndex != null) {
+            orderIndex.clear();
+        }
         size = 0;
+        modCount++;
+    }
+
+    private void clearInPlace() {
+        for (int index = 0; index < size; index++) {
+            recycle(heap[index]);
+            heap[index] = null;
+        }
+        Arrays.fill(table, null);
+        oldTable = null;
+        transferIndex = 0;
+        if (minHeap != null) {
+            minHeap.clear();
+        }
+        if (orderIndex != null) {
+            orderIndex.clear();
+        }
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Turns node recycling on or off. While it is on, nodes of removed,
+     * polled and evicted entries are kept on a free list and reused for new
+     * keys, and {@link #clear()} keeps the capacity, so that a warmed-up map
+     * allocates nothing in a steady state of puts and removals. A recycled
+     * node is reused as the entry of another key: entries taken from the map
+     * must not be used after their key is removed.
+     */
+    public void setNodeRecyclingEnabled(boolean enabled) {
+        nodeRecycling = enabled;
+        if (!enabled) {
+            freeNodes = null;
+        }
+    }
+
+    public boolean isNodeRecyclingEnabled() {
+        return nodeRecycling;
+    }
+
+    private Node<K, V> newNode(int hash, K key, V value) {
+        Node<K, V> node = freeNodes;
+        if (node == null) {
+            return new Node<>(hash, key, value, null);
+        }
+        freeNodes = node.nextNode;
+        node.hash = hash;
+        node.key = key;
+        node.value = value;
+        node.nextNode = null;
+        return node;
+    }
+
+    /**
+     * Puts a node that left the map on the free list. Tree nodes are left to
+     * the garbage collector, as they only serve in tree bins.
+     */
+    private void recycle(Node<K, V> node) {
+        if (!nodeRecycling || node instanceof TreeBin.TreeNode) {
+            return;
+        }
+        node.key = null;
+        node.value = null;
+        node.nextNode = freeNodes;
+        freeNodes = node;
     }
 
     @Override
     public Set<K> keySet() {
-        K[] keys = (K[]) new Comparable[size];
-        int insertionIndex = 0;
-        Node<K, V> currentNode;
-        for (Node<K, V> node : table) {
-            currentNode = node;
-            while (currentNode != null) {
-                K nodeKey = currentNode.key;
-                keys[insertionIndex] = nodeKey;
-                insertionIndex++;
-                currentNode = currentNode.nextNode;
-            }
-        }
-        return new ImmutableFictiveSet<>(keys);
+        return new KeySetView<>(this);
     }
 
     @Override
     public Collection<V> values() {
-        V[] values = (V[]) new Object[size];
-        int insertionIndex = 0;
-        Node<K, V> currentNode;
-        for (Node<K, V> node : table) {
-            currentNode = node;
-            while (currentNode != null) {
-                V nodeValue = currentNode.value;
-                values[insertionIndex] = nodeValue;
-                insertionIndex++;
-                currentNode = currentNode.nextNode;
-            }
-        }
-        return new ImmutableFictiveSet<>(values);
+        return new ValuesView<>(this);
     }
 
     @Override
     public Set<Entry<K, V>> entrySet() {
-        Entry<K, V>[] entries = (Entry<K, V>[]) new Entry[size];
-        int insertionIndex = 0;
-        Node<K, V> currentNode;
-        for (Node<K, V> node : table) {
-            currentNode = node;
-            while (currentNode != null) {
-                entries[insertionIndex] = currentNode;
-                insertionIndex++;
-                currentNode = currentNode.nextNode;
-            }
+        return new EntrySetView<>(this);
+    }
+
+    /**
+     * Performs {@code action} for each entry in heap order, not in priority
+     * order, and throws {@link ConcurrentModificationException} if the
+     * action modifies the map.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        for (int index = 0; index < size; index++) {
+            action.accept(heap[index].key, heap[index].value);
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    public void replaceAll(
+            BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        int expectedModCount = modCount;
+        for (int index = 0; index < size; index++) {
+            Node<K, V> node = heap[index];
+            node.value = function.apply(node.key, node.value);
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (customPriority) {
+            heapify();
+        }
+    }
+
+    /**
+     * Performs {@code action} for each entry, in parallel on the common
+     * fork-join pool once the map holds more than
+     * {@code parallelismThreshold} entries. As with
+     * {@link java.util.concurrent.ConcurrentHashMap}, a threshold of
+     * {@link Long#MAX_VALUE} keeps the work sequential and a threshold of 1
+     * splits it as finely as possible. The map must not be modified
+     * structurally while the operation runs.
+     */
+    public void forEach(long parallelismThreshold,
+                        BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        invokeBulk(parallelismThreshold, node -> {
+            action.accept(node.key, node.value);
+            return null;
+        }, null);
+    }
+
+    /**
+     * Replaces every value with the result of {@code function}, in parallel
+     * as described for {@link #forEach(long, BiConsumer)}.
+     */
+    public void replaceAll(long parallelismThreshold,
+                           BiFunction<? super K, ? super V, ? extends V>
+                                   function) {
+        Objects.requireNonNull(function);
+        invokeBulk(parallelismThreshold, node -> {
+            node.value = function.apply(node.key, node.value);
+            return null;
+        }, null);
+        if (customPriority) {
+            heapify();
+        }
+    }
+
+    /**
+     * Returns the result of combining the non-null transformations of all
+     * entries with {@code reducer}, or {@code null} if there are none. The
+     * work runs in parallel as described for
+     * {@link #forEach(long, BiConsumer)}, so the reducer must be
+     * associative.
+     */
+    public <U> U reduce(long parallelismThreshold,
+                        BiFunction<? super K, ? super V, ? extends U>
+                                transformer,
+                        BiFunction<? super U, ? super U, ? extends U>
+                                reducer) {
+        Objects.requireNonNull(transformer);
+        Objects.requireNonNull(reducer);
+        return invokeBulk(parallelismThreshold,
+                node -> transformer.apply(node.key, node.value), reducer);
+    }
+
+    private <U> U invokeBulk(long parallelismThreshold,
+                             Function<Node<K, V>, ? extends U> transformer,
+                             BiFunction<? super U, ? super U, ? extends U>
+                                     reducer) {
+        int expectedModCount = modCount;
+        U result = new HeapBulkTask<>(this, parallelismThreshold, 0, size,
+                transformer, reducer).invoke();
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        return result;
+    }
+
+    /**
+     * Moves the entry for {@code key} to the place its current priority
+     * calls for, in O(log n), whether the priority went up or down. Returns
+     * {@code false} if the map has no such key.
+     */
+    public boolean updatePriority(Object key) {
+        Node<K, V> node = findByKey(key);
+        if (node == null) {
+            return false;
         }
-        Arrays.sort(entries, entryComparator);
-        return new ImmutableFictiveSet<>(entries);
+        reposition(node);
+        return true;
+    }
+
+    /**
+     * Returns the priority comparator, or {@code null} if entries are ranked
+     * by the natural order of their keys.
+     */
+    public Comparator<? super Entry<K, V>> comparator() {
+        if (customPriority) {
+            return entryComparator;
+        }
+        return null;
+    }
+
+    /**
+     * Returns an iterator over the entries from the highest priority key to
+     * the lowest. Entries are taken from the priority heap lazily, so reading
+     * the first k of them costs O(k log k) and the map is never sorted as a
+     * whole. The iterator does not support removal.
+     */
+    public Iterator<Entry<K, V>> priorityIterator() {
+        return new PriorityIterator<>(this);
     }
 
     public V peekValueWithPriorityKey() {
-        Node<K, V> maxKeyNode = null;
-        Node<K, V> currentNode;
-        for (Node<K, V> node : table) {
-            currentNode = node;
-            while (currentNode != null) {
-                if (maxKeyNode == null) {
-                    if (currentNode.key == null) {
-                        maxKeyNode = currentNode;
-                    }
-                } else if (entryComparator
-                        .compare(maxKeyNode, currentNode) == -1) {
-                    maxKeyNode = currentNode;
-                }
-                currentNode = currentNode.nextNode;
-            }
+        if (statistics != null) {
+            statistics.recordPeek();
         }
-        if (maxKeyNode == null) {
+        if (size == 0) {
             return null;
         }
-        return maxKeyNode.value;
+        return heap[0].value;
     }
 
     public V pollValueWithPriorityKey() {
-        Node<K, V> maxKeyNode = null;
-        Node<K, V> maxKeyNodeParent = null;
-        int position = 0;
-        for (int index = 0; index < table.length; index++) {
-            Node<K, V> currentNode = table[index];
-            Node<K, V> currentNodeParent = null;
-            while (currentNode != null) {
-                if (maxKeyNode == null) {
-                    if (currentNode.key == null) {
-                        maxKeyNode = currentNode;
-                        maxKeyNodeParent = currentNodeParent;
-                        position = index;
-                    }
-                } else if (entryComparator
-                        .compare(maxKeyNode, currentNode) == -1) {
-                    maxKeyNode = currentNode;
-                    maxKeyNodeParent = currentNodeParent;
-                    position = index;
-                }
-                currentNodeParent = currentNode;
-                currentNode = currentNode.nextNode;
-            }
+        if (size == 0) {
+            return null;
+        }
+        Node<K, V> maxKeyNode = heap[0];
+        if (orderIndex != null) {
+            orderIndex.remove(maxKeyNode);
+        }
+        unlinkFromTable(maxKeyNode);
+        int siftSteps = removeFromHeap(maxKeyNode);
+        if (statistics != null) {
+            statistics.recordPoll(siftSteps);
+        }
+        transferBuckets(resizeStep);
+        V value = maxKeyNode.value;
+        recycle(maxKeyNode);
+        return value;
+    }
+
+    /**
+     * Turns collection of lookup, resize and heap counters on or off.
+     * Enabling starts from zeroed counters; while disabled the map pays only
+     * a null check per operation.
+     */
+    public void setStatisticsEnabled(boolean enabled) {
+        if (!enabled) {
+            statistics = null;
+        } else if (statistics == null) {
+            statistics = new StatisticsCounter();
+        }
+    }
+
+    public boolean isStatisticsEnabled() {
+        return statistics != null;
+    }
+
+    /**
+     * Returns a snapshot of the bucket layout and of the collected counters.
+     * Building it walks the whole table, so it is meant for monitoring
+     * rather than for hot paths.
+     */
+    public PriorityHashMapStatistics getStatistics() {
+        return PriorityHashMapStatistics.collect(tablesForIteration(), size,
+                HISTOGRAM_SIZE, statistics);
+    }
+
+    /**
+     * Bounds the map to at most {@code newMaximumSize} entries and evicts the
+     * lowest-priority entries that no longer fit. While bounded, adding a new
+     * key to a full map evicts the lowest-priority entry in O(log n), or
+     * drops the new entry if it does not rank above that entry. Every dropped
+     * entry is reported to the eviction listener. {@link Integer#MAX_VALUE}
+     * removes the bound.
+     */
+    public void setMaximumSize(int newMaximumSize) {
+        if (newMaximumSize < 0) {
+            throw new IllegalArgumentException(
+                    "Maximum size must be positive or zero.");
+        }
+        maximumSize = newMaximumSize;
+        if (maximumSize == Integer.MAX_VALUE) {
+            minHeap = null;
+            return;
+        }
+        if (minHeap == null) {
+            minHeap = MinHeap.of(heap, size, entryComparator);
+        }
+        trimToMaximumSize();
+    }
+
+    private void trimToMaximumSize() {
+        while (size > maximumSize) {
+            Node<K, V> lowestNode = minHeap.peek();
+            removeNode(lowestNode);
+            notifyEviction(lowestNode);
+            recycle(lowestNode);
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setEvictionListener(
+            EvictionListener<? super K, ? super V> listener) {
+        evictionListener = listener;
+    }
+
+    /**
+     * Turns the order index on or off. The index keeps the keys sorted, with
+     * the {@code null} key lowest, in a skip list next to the hash table, so
+     * that the ordered queries below run in O(log n) and a range of k entries
+     * in O(log n + k). It costs an extra O(log n) on every insertion and
+     * removal; enabling it on a filled map sorts the existing keys once.
+     */
+    public void setOrderIndexEnabled(boolean enabled) {
+        if (!enabled) {
+            orderIndex = null;
+            return;
+        }
+        if (orderIndex != null) {
+            return;
+        }
+        orderIndex = new OrderIndex<>();
+        for (int index = 0; index < size; index++) {
+            orderIndex.add(heap[index]);
+        }
+    }
+
+    public boolean isOrderIndexEnabled() {
+        return orderIndex != null;
+    }
+
+    private OrderIndex<K, V> requireOrderIndex() {
+        if (orderIndex == null) {
+            throw new IllegalStateException("Order index is disabled.");
+        }
+        return orderIndex;
+    }
+
+    public K firstKey() {
+        return requireNode(requireOrderIndex().first()).key;
+    }
+
+    public K lastKey() {
+        return requireNode(requireOrderIndex().last()).key;
+    }
+
+    private static <K extends Comparable, V> Node<K, V> requireNode(
+            OrderIndex.IndexNode<K, V> indexNode) {
+        if (indexNode == null) {
+            throw new NoSuchElementException();
         }
-        if (maxKeyNode == null) {
+        return indexNode.getEntry();
+    }
+
+    /**
+     * Returns the entry with the lowest key not below {@code key}, or
+     * {@code null} if there is none.
+     */
+    public Entry<K, V> ceilingEntry(K key) {
+        return entryOf(requireOrderIndex().ceiling(key, true));
+    }
+
+    /**
+     * Returns the entry with the highest key not above {@code key}, or
+     * {@code null} if there is none.
+     */
+    public Entry<K, V> floorEntry(K key) {
+        return entryOf(requireOrderIndex().floor(key, true));
+    }
+
+    /**
+     * Returns the lowest key not below {@code key}, or {@code null} if there
+     * is none. As the {@code null} key is the lowest of all, use
+     * {@link #ceilingEntry(Comparable)} to tell the two apart.
+     */
+    public K ceilingKey(K key) {
+        return keyOf(ceilingEntry(key));
+    }
+
+    /**
+     * Returns the highest key not above {@code key}, or {@code null} if there
+     * is none or if it is the {@code null} key.
+     */
+    public K floorKey(K key) {
+        return keyOf(floorEntry(key));
+    }
+
+    private static <K extends Comparable, V> Entry<K, V> entryOf(
+            OrderIndex.IndexNode<K, V> indexNode) {
+        if (indexNode == null) {
             return null;
         }
-        if (maxKeyNodeParent == null) {
-            table[position] = maxKeyNode.nextNode;
-        } else {
-            maxKeyNodeParent.nextNode = maxKeyNode.nextNode;
+        return indexNode.getEntry();
+    }
+
+    private static <K extends Comparable, V> K keyOf(Entry<K, V> entry) {
+        if (entry == null) {
+            return null;
         }
-        return maxKeyNode.value;
+        return entry.getKey();
     }
 
-    private class ImmutableFictiveSet<T> implements Set<T> {
-        private int size = PriorityHashMap.this.size;
+    /**
+     * Returns the entry whose key has exactly {@code rank} lower keys in the
+     * map, so rank 0 is the lowest key.
+     */
+    public Entry<K, V> entryAtRank(int rank) {
+        return requireOrderIndex().get(rank).getEntry();
+    }
 
-        private T[] elements;
+    /**
+     * Returns the entries with keys below {@code toKey} as a new map that
+     * iterates in key order.
+     */
+    public Map<K, V> headMap(K toKey) {
+        return OrderIndex.copyRange(requireOrderIndex().first(), toKey, true);
+    }
 
-        private ImmutableFictiveSet(T[] elements) {
-            this.elements = elements;
+    /**
+     * Returns the entries with keys not below {@code fromKey} as a new map
+     * that iterates in key order.
+     */
+    public Map<K, V> tailMap(K fromKey) {
+        return OrderIndex.copyRange(requireOrderIndex().ceiling(fromKey, true),
+                null, false);
+    }
+
+    /**
+     * Returns the entries with keys from {@code fromKey}, inclusive, to
+     * {@code toKey}, exclusive, as a new map that iterates in key order.
+     */
+    public Map<K, V> subMap(K fromKey, K toKey) {
+        if (compareKeys(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException(
+                    "fromKey must not be above toKey.");
         }
+        return OrderIndex.copyRange(requireOrderIndex().ceiling(fromKey, true),
+                toKey, true);
+    }
 
+    StatisticsCounter getStatisticsCounter() {
+        return statistics;
+    }
 
-        @Override
-        public int size() {
-            return size;
+    int capacity() {
+        if (oldTable == null) {
+            return table.length;
         }
+        return table.length + oldTable.length;
+    }
 
-        @Override
-        public boolean isEmpty() {
-            return size == 0;
+    Comparator<? super Entry<K, V>> getEntryComparator() {
+        return entryComparator;
+    }
+
+    /**
+     * Returns the tables to iterate over: the old table first while a resize
+     * is in progress, then the current one.
+     */
+    Node<K, V>[][] tablesForIteration() {
+        if (oldTable == null) {
+            return new Node[][] {table};
         }
+        return new Node[][] {oldTable, table};
+    }
 
-        @Override
-        public boolean contains(Object o) {
-            if (o == null) {
-                for (T key : elements) {
-                    if (key == null) {
-                        return true;
-                    }
-                }
-            } else {
-                for (T key : elements) {
-                    if (o.equals(key)) {
-                        return true;
-                    }
-                }
+    int getModCount() {
+        return modCount;
+    }
+
+    int getInitialCapacity() {
+        return initialCapacity;
+    }
+
+    float getLoadFactor() {
+        return loadFactor;
+    }
+
+    Node<K, V> heapNodeAt(int heapIndex) {
+        return heap[heapIndex];
+    }
+
+    /**
+     * Grows the table and heap in one step so that {@code expectedSize}
+     * entries fit without further resizing. Entries already in the map are
+     * moved to the new table right away.
+     */
+    void ensureCapacity(int expectedSize) {
+        long requiredCapacity = (long) Math.ceil(expectedSize / loadFactor);
+        int tableLength = tableSizeFor(
+                (int) Math.min(MAXIMUM_CAPACITY, requiredCapacity + 1));
+        if (tableLength > table.length) {
+            if (oldTable != null) {
+                transferBuckets(oldTable.length);
             }
-            return false;
+            oldTable = table;
+            transferIndex = 0;
+            table = new Node[tableLength];
+            threshold = thresholdFor(tableLength);
+            transferBuckets(oldTable.length);
         }
+        if (expectedSize > heap.length) {
+            heap = Arrays.copyOf(heap, expectedSize);
+        }
+    }
 
-        @Override
-        public Iterator<T> iterator() {
-            return new Iterator<T>() {
-                private int position = 0;
-
-                @Override
-                public boolean hasNext() {
-                    return position < size;
-                }
+    /**
+     * Adds a new key at the end of the heap without sifting it and without
+     * looking it up first. Used to load entries that are known to be
+     * distinct and that arrive in heap order.
+     */
+    void appendInHeapOrder(K key, V value) {
+        appendNode(hash(key), key, value);
+    }
 
-                @Override
-                public T next() {
-                    T next = elements[position];
-                    position++;
-                    return next;
-                }
-            };
+    private void appendNode(int hash, K key, V value) {
+        if (size >= threshold) {
+            extendTable();
         }
+        Node<K, V> node = newNode(hash, key, value);
+        appendToHeap(node);
+        if (orderIndex != null) {
+            orderIndex.add(node);
+        }
+        linkNode(table, node);
+        transferBuckets(resizeStep);
+    }
 
-        @Override
-        public Object[] toArray() {
-            Object[] newArray = new Object[size];
-            System.arraycopy(elements, 0, newArray, 0, size);
-            return newArray;
+    private void unlinkFromTable(Node<K, V> node) {
+        if (oldTable != null) {
+            int oldPosition = indexFor(node.hash, oldTable.length);
+            if (oldPosition >= transferIndex
+                    && unlinkFromBucket(oldTable, oldPosition, node)) {
+                return;
+            }
         }
+        unlinkFromBucket(table, indexFor(node.hash, table.length), node);
+    }
 
-        @Override
-        public <T> T[] toArray(T[] a) {
-            T[] array;
-            if (a.length >= size) {
-                array = a;
-            } else {
-                array = (T[]) Array.newInstance(a.getClass(), size);
+    private static <K extends Comparable, V> boolean unlinkFromBucket(
+            Node<K, V>[] nodes, int position, Node<K, V> node) {
+        Node<K, V> currentNode = nodes[position];
+        if (currentNode instanceof TreeBin) {
+            TreeBin<K, V> bin = (TreeBin<K, V>) currentNode;
+            if (!bin.contains(node)) {
+                return false;
             }
-            System.arraycopy(elements, 0, array, 0, size);
-            if (array.length > size) {
-                array[size] = null;
+            bin.remove((TreeBin.TreeNode<K, V>) node);
+            if (bin.getCount() <= UNTREEIFY_THRESHOLD) {
+                nodes[position] = bin.getFirst();
             }
-            return array;
+            return true;
+        }
+        if (currentNode == node) {
+            nodes[position] = node.nextNode;
+            return true;
         }
+        while (currentNode != null && currentNode.nextNode != node) {
+            currentNode = currentNode.nextNode;
+        }
+        if (currentNode == null) {
+            return false;
+        }
+        currentNode.nextNode = node.nextNode;
+        return true;
+    }
 
-        @Override
-        public boolean add(T t) {
-            throw new UnsupportedOperationException(
-                    "Set is immutable.");
+    private void addToHeap(Node<K, V> node) {
+        appendToHeap(node);
+        siftUp(node);
+        if (minHeap != null) {
+            minHeap.restore(node);
         }
+    }
 
-        @Override
-        public boolean remove(Object o) {
-            throw new UnsupportedOperationException(
-                    "Set is immutable.");
+    private void appendToHeap(Node<K, V> node) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * size + 1);
+        }
+        node.heapIndex = size;
+        heap[size] = node;
+        if (minHeap != null) {
+            minHeap.append(node);
         }
+        size++;
+        modCount++;
+    }
 
-        @Override
-        public boolean containsAll(Collection<?> c) {
-            for (Object element : c) {
-                if (!contains(element)) {
-                    return false;
-                }
+    private int removeFromHeap(Node<K, V> node) {
+        size--;
+        modCount++;
+        if (minHeap != null) {
+            minHeap.remove(node);
+        }
+        Node<K, V> lastNode = heap[size];
+        heap[size] = null;
+        if (lastNode == node) {
+            return 0;
+        }
+        lastNode.heapIndex = node.heapIndex;
+        heap[lastNode.heapIndex] = lastNode;
+        return siftDown(lastNode) + siftUp(lastNode);
+    }
+
+    private int siftUp(Node<K, V> node) {
+        int index = node.heapIndex;
+        int steps = 0;
+        while (index > 0) {
+            int parentIndex = (index - 1) / 2;
+            Node<K, V> parent = heap[parentIndex];
+            if (entryComparator.compare(parent, node) >= 0) {
+                break;
             }
-            return true;
+            parent.heapIndex = index;
+            heap[index] = parent;
+            index = parentIndex;
+            steps++;
         }
+        node.heapIndex = index;
+        heap[index] = node;
+        return steps;
+    }
 
-        @Override
-        public boolean addAll(Collection<? extends T> c) {
-            throw new UnsupportedOperationException(
-                    "Set is immutable.");
+    private int siftDown(Node<K, V> node) {
+        int index = node.heapIndex;
+        int steps = 0;
+        int half = size / 2;
+        while (index < half) {
+            int childIndex = 2 * index + 1;
+            Node<K, V> child = heap[childIndex];
+            int rightIndex = childIndex + 1;
+            if (rightIndex < size
+                    && entryComparator.compare(heap[rightIndex], child) > 0) {
+                childIndex = rightIndex;
+                child = heap[childIndex];
+            }
+            if (entryComparator.compare(node, child) >= 0) {
+                break;
+            }
+            child.heapIndex = index;
+            heap[index] = child;
+            index = childIndex;
+            steps++;
         }
+        node.heapIndex = index;
+        heap[index] = node;
+        return steps;
+    }
 
-        @Override
-        public boolean retainAll(Collection<?> c) {
-            throw new UnsupportedOperationException(
-                    "Set is immutable.");
+    private void reposition(Node<K, V> node) {
+        if (siftDown(node) + siftUp(node) > 0) {
+            modCount++;
         }
+        if (minHeap != null) {
+            minHeap.restore(node);
+        }
+    }
 
-        @Override
-        public boolean removeAll(Collection<?> c) {
-            throw new UnsupportedOperationException(
-                    "Set is immutable.");
+    /**
+     * Restores both heaps in O(n) with Floyd's bottom-up construction.
+     */
+    private void heapify() {
+        for (int index = size / 2 - 1; index >= 0; index--) {
+            siftDown(heap[index]);
         }
+        if (minHeap != null) {
+            minHeap.heapify();
+        }
+        modCount++;
+    }
 
-        @Override
-        public void clear() {
-            throw new UnsupportedOperationException(
-                    "Set is immutable.");
+    void removeNode(Node<K, V> node) {
+        if (orderIndex != null) {
+            orderIndex.remove(node);
         }
+        unlinkFromTable(node);
+        removeFromHeap(node);
     }
 }
@@ -0,0 +1,117 @@
+package ua.yandex.prioritymap;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Publishes a {@link PriorityHashMap}'s counters as a platform MXBean.
+ *
+ * <p>The map is not thread-safe, so JMX clients read its counters without
+ * synchronization and may see slightly stale numbers. The bucket histogram
+ * needs a walk over the table and is therefore only available from
+ * {@link PriorityHashMap#getStatistics()} on the owning thread.
+ */
+public class PriorityHashMapMonitor implements PriorityHashMapMonitorMXBean {
+    private static final String DOMAIN = "ua.yandex.prioritymap";
+    private final PriorityHashMap<?, ?> map;
+    private ObjectName objectName;
+
+    public PriorityHashMapMonitor(PriorityHashMap<?, ?> map) {
+        this.map = map;
+    }
+
+    /**
+     * Registers this monitor with the platform MBean server under
+     * {@code ua.yandex.prioritymap:type=PriorityHashMap,name=<name>}.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName newName = new ObjectName(DOMAIN
+                + ":type=PriorityHashMap,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(this, newName);
+        objectName = newName;
+        return newName;
+    }
+
+    public void unregister() throws JMException {
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer()
+                    .unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+
+    private static double ratio(long dividend, long divisor) {
+        if (divisor == 0) {
+            return 0;
+        }
+        return (double) dividend / divisor;
+    }
+
+    private StatisticsCounter counter() {
+        StatisticsCounter counter = map.getStatisticsCounter();
+        if (counter == null) {
+            return new StatisticsCounter();
+        }
+        return counter;
+    }
+
+    @Override
+    public int getSize() {
+        return map.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return map.capacity();
+    }
+
+    @Override
+    public double getLoad() {
+        return ratio(map.size(), map.capacity());
+    }
+
+    @Override
+    public boolean isStatisticsEnabled() {
+        return map.isStatisticsEnabled();
+    }
+
+    @Override
+    public long getLookups() {
+        return counter().getLookups();
+    }
+
+    @Override
+    public double getAverageProbesPerLookup() {
+        StatisticsCounter counter = counter();
+        return ratio(counter.getProbes(), counter.getLookups());
+    }
+
+    @Override
+    public long getResizes() {
+        return counter().getResizes();
+    }
+
+    @Override
+    public long getResizeNanos() {
+        return counter().getResizeNanos();
+    }
+
+    @Override
+    public long getPolls() {
+        return counter().getPolls();
+    }
+
+    @Override
+    public long getPeeks() {
+        return counter().getPeeks();
+    }
+
+    @Override
+    public double getAverageSiftStepsPerPoll() {
+        StatisticsCounter counter = counter();
+        return ratio(counter.getSiftSteps(), counter.getPolls());
+    }
+}
@@ -0,0 +1,29 @@
+package ua.yandex.prioritymap;
+
+/**
+ * JMX view of a {@link PriorityHashMap}'s statistics counters. See
+ * {@link PriorityHashMapMonitor}.
+ */
+public interface PriorityHashMapMonitorMXBean {
+    int getSize();
+
+    int getCapacity();
+
+    double getLoad();
+
+    boolean isStatisticsEnabled();
+
+    long getLookups();
+
+    double getAverageProbesPerLookup();
+
+    long getResizes();
+
+    long getResizeNanos();
+
+    long getPolls();
+
+    long getPeeks();
+
+    double getAverageSiftStepsPerPoll();
+}
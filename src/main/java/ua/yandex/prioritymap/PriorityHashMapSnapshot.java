@@ -0,0 +1,260 @@
+package ua.yandex.prioritymap;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Binary snapshot format for {@link PriorityHashMap}.
+ *
+ * <p>A snapshot starts with a header (magic number, format version, initial
+ * capacity, load factor and entry count) followed by the entries in heap
+ * order, each one a length-prefixed serialized key and a length-prefixed
+ * serialized value; a length of -1 stands for {@code null}. Because the
+ * entries come in heap order, {@link #read(ReadableByteChannel, Serializer,
+ * Serializer)} rebuilds the priority heap by appending, and because the
+ * keys are known to be distinct it links them into a pre-sized table
+ * without looking them up.
+ */
+public final class PriorityHashMapSnapshot {
+    private static final int MAGIC = 0x50484d53;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int SCRATCH_CAPACITY = 256;
+    private static final int NULL_LENGTH = -1;
+
+    private PriorityHashMapSnapshot() {
+    }
+
+    /**
+     * Writes {@code map} to {@code channel} in one streaming pass.
+     */
+    public static <K extends Comparable, V> void write(
+            PriorityHashMap<K, V> map, WritableByteChannel channel,
+            Serializer<? super K> keySerializer,
+            Serializer<? super V> valueSerializer) throws IOException {
+        SnapshotWriter writer = new SnapshotWriter(channel);
+        writer.writeInt(MAGIC);
+        writer.writeInt(VERSION);
+        writer.writeInt(map.getInitialCapacity());
+        writer.writeFloat(map.getLoadFactor());
+        int size = map.size();
+        writer.writeInt(size);
+        for (int heapIndex = 0; heapIndex < size; heapIndex++) {
+            PriorityHashMap.Node<K, V> node = map.heapNodeAt(heapIndex);
+            writer.writeObject(keySerializer, node.getKey());
+            writer.writeObject(valueSerializer, node.getValue());
+        }
+        writer.flush();
+    }
+
+    /**
+     * Reads a map written by {@link #write(PriorityHashMap,
+     * WritableByteChannel, Serializer, Serializer)} from a map that ranks
+     * entries by the natural order of their keys.
+     */
+    public static <K extends Comparable, V> PriorityHashMap<K, V> read(
+            ReadableByteChannel channel, Serializer<K> keySerializer,
+            Serializer<V> valueSerializer) throws IOException {
+        return read(channel, keySerializer, valueSerializer, null);
+    }
+
+    /**
+     * Reads a map written from a map with the given priority comparator.
+     * The snapshot stores entries in the heap order of that comparator, so
+     * reading it with a different one leaves the priority heap invalid.
+     */
+    public static <K extends Comparable, V> PriorityHashMap<K, V> read(
+            ReadableByteChannel channel, Serializer<K> keySerializer,
+            Serializer<V> valueSerializer,
+            Comparator<? super Map.Entry<K, V>> priorityComparator)
+            throws IOException {
+        SnapshotReader reader = new SnapshotReader(channel);
+        if (reader.readInt() != MAGIC) {
+            throw new IOException("Not a priority map snapshot.");
+        }
+        int version = reader.readInt();
+        if (version != VERSION) {
+            throw new IOException(
+                    "Unsupported priority map snapshot version " + version);
+        }
+        int initialCapacity = reader.readInt();
+        float loadFactor = reader.readFloat();
+        int size = reader.readInt();
+        if (size < 0) {
+            throw new IOException("Corrupted priority map snapshot.");
+        }
+        PriorityHashMap<K, V> map;
+        try {
+            map = new PriorityHashMap<>(initialCapacity, loadFactor,
+                    priorityComparator);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupted priority map snapshot.", e);
+        }
+        map.ensureCapacity(size);
+        for (int heapIndex = 0; heapIndex < size; heapIndex++) {
+            K key = reader.readObject(keySerializer);
+            V value = reader.readObject(valueSerializer);
+            map.appendInHeapOrder(key, value);
+        }
+        return map;
+    }
+
+    private static final class SnapshotWriter {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer =
+                ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private ByteBuffer scratch = ByteBuffer.allocate(SCRATCH_CAPACITY);
+
+        private SnapshotWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensureRemaining(int byteCount) throws IOException {
+            if (buffer.remaining() < byteCount) {
+                flush();
+            }
+        }
+
+        private void writeInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        private void writeFloat(float value) throws IOException {
+            ensureRemaining(Float.BYTES);
+            buffer.putFloat(value);
+        }
+
+        /**
+         * Serializes straight into the output buffer when the object fits
+         * there and falls back to a growing scratch buffer when it does not.
+         */
+        private <T> void writeObject(Serializer<? super T> serializer,
+                                     T object) throws IOException {
+            if (object == null) {
+                writeInt(NULL_LENGTH);
+                return;
+            }
+            ensureRemaining(Integer.BYTES);
+            int lengthPosition = buffer.position();
+            ((Buffer) buffer).position(lengthPosition + Integer.BYTES);
+            try {
+                serializer.write(object, buffer);
+                buffer.putInt(lengthPosition,
+                        buffer.position() - lengthPosition - Integer.BYTES);
+                return;
+            } catch (BufferOverflowException e) {
+                ((Buffer) buffer).position(lengthPosition);
+            }
+            serializeToScratch(serializer, object);
+            writeInt(scratch.remaining());
+            if (scratch.remaining() > buffer.remaining()) {
+                flush();
+            }
+            if (scratch.remaining() > buffer.remaining()) {
+                writeFully(scratch);
+            } else {
+                buffer.put(scratch);
+            }
+        }
+
+        private <T> void serializeToScratch(Serializer<? super T> serializer,
+                                            T object) {
+            for (;;) {
+                ((Buffer) scratch).clear();
+                try {
+                    serializer.write(object, scratch);
+                    ((Buffer) scratch).flip();
+                    return;
+                } catch (BufferOverflowException e) {
+                    scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            ((Buffer) buffer).flip();
+            writeFully(buffer);
+            ((Buffer) buffer).clear();
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    private static final class SnapshotReader {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer =
+                ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private SnapshotReader(ReadableByteChannel channel) {
+            this.channel = channel;
+            ((Buffer) buffer).limit(0);
+        }
+
+        private void require(int byteCount) throws IOException {
+            if (buffer.remaining() >= byteCount) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < byteCount) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException(
+                            "Truncated priority map snapshot.");
+                }
+            }
+            ((Buffer) buffer).flip();
+        }
+
+        private int readInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        private float readFloat() throws IOException {
+            require(Float.BYTES);
+            return buffer.getFloat();
+        }
+
+        private <T> T readObject(Serializer<T> serializer) throws IOException {
+            int length = readInt();
+            if (length == NULL_LENGTH) {
+                return null;
+            }
+            if (length < 0) {
+                throw new IOException("Corrupted priority map snapshot.");
+            }
+            if (length > buffer.capacity()) {
+                return serializer.read(readLargeObject(length));
+            }
+            require(length);
+            ByteBuffer bytes = buffer.slice();
+            ((Buffer) bytes).limit(length);
+            ((Buffer) buffer).position(buffer.position() + length);
+            return serializer.read(bytes);
+        }
+
+        private ByteBuffer readLargeObject(int length) throws IOException {
+            ByteBuffer bytes = ByteBuffer.allocate(length);
+            bytes.put(buffer);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes) < 0) {
+                    throw new EOFException(
+                            "Truncated priority map snapshot.");
+                }
+            }
+            ((Buffer) bytes).flip();
+            return bytes;
+        }
+    }
+}
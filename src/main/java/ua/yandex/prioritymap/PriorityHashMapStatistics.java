@@ -0,0 +1,211 @@
+package ua.yandex.prioritymap;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Point-in-time snapshot of a {@link PriorityHashMap}'s layout and of the
+ * counters collected since statistics were enabled. The layout part (size,
+ * capacity, bucket histogram) is always filled in; the counters are zero for
+ * a map that does not collect statistics.
+ */
+public final class PriorityHashMapStatistics {
+    private final int size;
+    private final int capacity;
+    private final int occupiedBuckets;
+    private final int treeBins;
+    private final int longestBucket;
+    private final int[] bucketSizeHistogram;
+    private final long lookups;
+    private final long probes;
+    private final long resizes;
+    private final long resizeNanos;
+    private final long polls;
+    private final long peeks;
+    private final long siftSteps;
+
+    PriorityHashMapStatistics(int size, int capacity, int treeBins,
+                              int[] bucketSizeHistogram, int longestBucket,
+                              StatisticsCounter counter) {
+        this.size = size;
+        this.capacity = capacity;
+        this.treeBins = treeBins;
+        this.bucketSizeHistogram = bucketSizeHistogram;
+        this.longestBucket = longestBucket;
+        this.occupiedBuckets = capacity - bucketSizeHistogram[0];
+        if (counter == null) {
+            lookups = 0;
+            probes = 0;
+            resizes = 0;
+            resizeNanos = 0;
+            polls = 0;
+            peeks = 0;
+            siftSteps = 0;
+        } else {
+            lookups = counter.getLookups();
+            probes = counter.getProbes();
+            resizes = counter.getResizes();
+            resizeNanos = counter.getResizeNanos();
+            polls = counter.getPolls();
+            peeks = counter.getPeeks();
+            siftSteps = counter.getSiftSteps();
+        }
+    }
+
+    /**
+     * Walks the buckets of {@code tables} to build the layout part of the
+     * statistics; bucket sizes of {@code histogramSize - 1} and above share
+     * the last histogram slot.
+     */
+    static PriorityHashMapStatistics collect(
+            PriorityHashMap.Node<?, ?>[][] tables, int size, int histogramSize,
+            StatisticsCounter counter) {
+        int[] histogram = new int[histogramSize];
+        int capacity = 0;
+        int treeBins = 0;
+        int longestBucket = 0;
+        for (PriorityHashMap.Node<?, ?>[] nodes : tables) {
+            capacity += nodes.length;
+            for (PriorityHashMap.Node<?, ?> bucket : nodes) {
+                int bucketSize = 0;
+                if (bucket instanceof TreeBin) {
+                    treeBins++;
+                    bucketSize = ((TreeBin<?, ?>) bucket).getCount();
+                } else {
+                    for (PriorityHashMap.Node<?, ?> node = bucket;
+                         node != null; node = node.next()) {
+                        bucketSize++;
+                    }
+                }
+                histogram[Math.min(bucketSize, histogramSize - 1)]++;
+                longestBucket = Math.max(longestBucket, bucketSize);
+            }
+        }
+        return new PriorityHashMapStatistics(size, capacity, treeBins,
+                histogram, longestBucket, counter);
+    }
+
+    /**
+     * Returns the number of nodes a lookup of {@code key} visits in
+     * {@code bucket}.
+     */
+    static int countProbes(PriorityHashMap.Node<?, ?> bucket, int hash,
+                           Object key) {
+        if (bucket instanceof TreeBin) {
+            return ((TreeBin<?, ?>) bucket).countProbes(hash, key);
+        }
+        int probes = 0;
+        PriorityHashMap.Node<?, ?> currentNode = bucket;
+        while (currentNode != null) {
+            probes++;
+            if (currentNode.hash() == hash
+                    && Objects.equals(currentNode.getKey(), key)) {
+                return probes;
+            }
+            currentNode = currentNode.next();
+        }
+        return probes;
+    }
+
+    private static double ratio(long dividend, long divisor) {
+        if (divisor == 0) {
+            return 0;
+        }
+        return (double) dividend / divisor;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of buckets, counting both tables while an
+     * incremental resize is in progress.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public double getLoad() {
+        return ratio(size, capacity);
+    }
+
+    public int getOccupiedBuckets() {
+        return occupiedBuckets;
+    }
+
+    public int getTreeBins() {
+        return treeBins;
+    }
+
+    public int getLongestBucket() {
+        return longestBucket;
+    }
+
+    /**
+     * Returns how many buckets hold each number of entries: element i counts
+     * buckets with exactly i entries, and the last element counts every
+     * bucket with at least that many.
+     */
+    public int[] getBucketSizeHistogram() {
+        return Arrays.copyOf(bucketSizeHistogram, bucketSizeHistogram.length);
+    }
+
+    public long getLookups() {
+        return lookups;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public double getAverageProbesPerLookup() {
+        return ratio(probes, lookups);
+    }
+
+    /**
+     * Returns the number of completed resizes.
+     */
+    public long getResizes() {
+        return resizes;
+    }
+
+    /**
+     * Returns the time spent allocating tables and moving buckets, summed
+     * over all incremental resize steps.
+     */
+    public long getResizeNanos() {
+        return resizeNanos;
+    }
+
+    public long getPolls() {
+        return polls;
+    }
+
+    public long getPeeks() {
+        return peeks;
+    }
+
+    public double getAverageSiftStepsPerPoll() {
+        return ratio(siftSteps, polls);
+    }
+
+    @Override
+    public String toString() {
+        return "PriorityHashMapStatistics{size=" + size
+                + ", capacity=" + capacity
+                + ", occupiedBuckets=" + occupiedBuckets
+                + ", treeBins=" + treeBins
+                + ", longestBucket=" + longestBucket
+                + ", bucketSizeHistogram="
+                + Arrays.toString(bucketSizeHistogram)
+                + ", lookups=" + lookups
+                + ", averageProbesPerLookup=" + getAverageProbesPerLookup()
+                + ", resizes=" + resizes
+                + ", resizeNanos=" + resizeNanos
+                + ", polls=" + polls
+                + ", peeks=" + peeks
+                + ", averageSiftStepsPerPoll=" + getAverageSiftStepsPerPoll()
+                + '}';
+    }
+}
@@ -0,0 +1,105 @@
+package ua.yandex.prioritymap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks the priority heap of a {@link PriorityHashMap} in order by keeping a
+ * small heap of candidate heap indices: the next entry is always the best
+ * candidate, and taking it makes its two children candidates.
+ */
+final class PriorityIterator<K extends Comparable, V>
+        implements Iterator<Map.Entry<K, V>> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final PriorityHashMap<K, V> map;
+    private final Comparator<? super Map.Entry<K, V>> entryComparator;
+    private final int size;
+    private final int expectedModCount;
+    private int[] candidates = new int[INITIAL_CAPACITY];
+    private int candidatesCount;
+
+    PriorityIterator(PriorityHashMap<K, V> map) {
+        this.map = map;
+        entryComparator = map.getEntryComparator();
+        size = map.size();
+        expectedModCount = map.getModCount();
+        if (size > 0) {
+            candidatesCount = 1;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return candidatesCount > 0;
+    }
+
+    @Override
+    public Map.Entry<K, V> next() {
+        if (map.getModCount() != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (candidatesCount == 0) {
+            throw new NoSuchElementException();
+        }
+        int heapIndex = candidates[0];
+        candidatesCount--;
+        int lastCandidate = candidates[candidatesCount];
+        if (candidatesCount > 0) {
+            placeCandidate(lastCandidate, 0);
+        }
+        int leftChild = 2 * heapIndex + 1;
+        if (leftChild < size) {
+            addCandidate(leftChild);
+        }
+        if (leftChild + 1 < size) {
+            addCandidate(leftChild + 1);
+        }
+        return map.heapNodeAt(heapIndex);
+    }
+
+    private boolean isBefore(int firstIndex, int secondIndex) {
+        return entryComparator.compare(map.heapNodeAt(firstIndex),
+                map.heapNodeAt(secondIndex)) > 0;
+    }
+
+    private void addCandidate(int heapIndex) {
+        if (candidatesCount == candidates.length) {
+            candidates = Arrays.copyOf(candidates, 2 * candidatesCount);
+        }
+        int index = candidatesCount;
+        candidatesCount++;
+        while (index > 0) {
+            int parentIndex = (index - 1) / 2;
+            if (!isBefore(heapIndex, candidates[parentIndex])) {
+                break;
+            }
+            candidates[index] = candidates[parentIndex];
+            index = parentIndex;
+        }
+        candidates[index] = heapIndex;
+    }
+
+    private void placeCandidate(int heapIndex, int startIndex) {
+        int index = startIndex;
+        int half = candidatesCount / 2;
+        while (index < half) {
+            int childIndex = 2 * index + 1;
+            int rightIndex = childIndex + 1;
+            if (rightIndex < candidatesCount && isBefore(
+                    candidates[rightIndex], candidates[childIndex])) {
+                childIndex = rightIndex;
+            }
+            if (!isBefore(candidates[childIndex], heapIndex)) {
+                break;
+            }
+            candidates[index] = candidates[childIndex];
+            index = childIndex;
+        }
+        candidates[index] = heapIndex;
+    }
+}
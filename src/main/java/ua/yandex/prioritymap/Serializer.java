@@ -0,0 +1,23 @@
+package ua.yandex.prioritymap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts keys or values of an {@link OffHeapPriorityHashMap} to and from
+ * bytes. Keys are compared and hashed by their serialized form, so equal
+ * keys must always serialize to the same bytes.
+ */
+public interface Serializer<T> {
+    /**
+     * Writes {@code object} at the buffer's position. The map retries with
+     * a bigger buffer when this throws
+     * {@link java.nio.BufferOverflowException}.
+     */
+    void write(T object, ByteBuffer buffer);
+
+    /**
+     * Reads an object from the buffer's remaining bytes, which are exactly
+     * the bytes {@link #write(Object, ByteBuffer)} produced for it.
+     */
+    T read(ByteBuffer buffer);
+}
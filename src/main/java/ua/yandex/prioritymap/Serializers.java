@@ -0,0 +1,56 @@
+package ua.yandex.prioritymap;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link Serializer}s for common key and value types.
+ */
+public final class Serializers {
+    public static final Serializer<Integer> INTEGER =
+            new Serializer<Integer>() {
+                @Override
+                public void write(Integer object, ByteBuffer buffer) {
+                    buffer.putInt(object);
+                }
+
+                @Override
+                public Integer read(ByteBuffer buffer) {
+                    return buffer.getInt();
+                }
+            };
+
+    public static final Serializer<Long> LONG = new Serializer<Long>() {
+        @Override
+        public void write(Long object, ByteBuffer buffer) {
+            buffer.putLong(object);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    };
+
+    public static final Serializer<String> STRING = new Serializer<String>() {
+        @Override
+        public void write(String object, ByteBuffer buffer) {
+            byte[] bytes = object.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > buffer.remaining()) {
+                throw new BufferOverflowException();
+            }
+            buffer.put(bytes);
+        }
+
+        @Override
+        public String read(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private Serializers() {
+    }
+}
@@ -0,0 +1,66 @@
+package ua.yandex.prioritymap;
+
+/**
+ * Mutable counters a {@link PriorityHashMap} updates while statistics are
+ * enabled. The map holds no counter at all while they are disabled, so the
+ * only cost left on its hot paths is a null check.
+ */
+final class StatisticsCounter {
+    private long lookups;
+    private long probes;
+    private long resizes;
+    private long resizeNanos;
+    private long polls;
+    private long peeks;
+    private long siftSteps;
+
+    void recordLookup(int probesOfLookup) {
+        lookups++;
+        probes += probesOfLookup;
+    }
+
+    void recordResizeWork(long nanos) {
+        resizeNanos += nanos;
+    }
+
+    void recordResize() {
+        resizes++;
+    }
+
+    void recordPoll(int siftStepsOfPoll) {
+        polls++;
+        siftSteps += siftStepsOfPoll;
+    }
+
+    void recordPeek() {
+        peeks++;
+    }
+
+    long getLookups() {
+        return lookups;
+    }
+
+    long getProbes() {
+        return probes;
+    }
+
+    long getResizes() {
+        return resizes;
+    }
+
+    long getResizeNanos() {
+        return resizeNanos;
+    }
+
+    long getPolls() {
+        return polls;
+    }
+
+    long getPeeks() {
+        return peeks;
+    }
+
+    long getSiftSteps() {
+        return siftSteps;
+    }
+}
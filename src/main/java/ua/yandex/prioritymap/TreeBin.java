@@ -0,0 +1,358 @@
+package ua.yandex.prioritymap;
+
+import java.util.Objects;
+
+/**
+ * Head of a {@link PriorityHashMap} bucket whose chain grew too long. The
+ * bucket's nodes form a red-black tree ordered by hash, then by
+ * {@code compareTo} for keys of the same class, then by identity hash, so a
+ * lookup costs O(log n) even when every key in the bucket shares a hash.
+ * The nodes are also kept in a doubly linked list through
+ * {@code nextNode}/{@code prev}, which iteration and resizing walk exactly
+ * like an ordinary chain.
+ *
+ * <p>Removal relinks nodes rather than copying keys and values between them,
+ * because the priority heap refers to the nodes themselves.
+ */
+final class TreeBin<K extends Comparable, V>
+        extends PriorityHashMap.Node<K, V> {
+    private TreeNode<K, V> root;
+    private TreeNode<K, V> first;
+    private int count;
+
+    static final class TreeNode<K extends Comparable, V>
+            extends PriorityHashMap.Node<K, V> {
+        private TreeNode<K, V> parent;
+        private TreeNode<K, V> left;
+        private TreeNode<K, V> right;
+        private TreeNode<K, V> prev;
+        private boolean red;
+
+        TreeNode(int hash, K key, V value) {
+            super(hash, key, value, null);
+        }
+    }
+
+    TreeBin() {
+        super(0, null, null, null);
+    }
+
+    TreeNode<K, V> getFirst() {
+        return first;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    private static boolean isRed(TreeNode<?, ?> node) {
+        return node != null && node.red;
+    }
+
+    private static int compareComparables(Object firstKey, Object secondKey) {
+        if (firstKey == null || secondKey == null
+                || firstKey.getClass() != secondKey.getClass()) {
+            return 0;
+        }
+        return ((Comparable) firstKey).compareTo(secondKey);
+    }
+
+    private static int compareForInsert(TreeNode<?, ?> node,
+                                        TreeNode<?, ?> other) {
+        if (node.hash() != other.hash()) {
+            return Integer.compare(node.hash(), other.hash());
+        }
+        int comparison = compareComparables(node.getKey(), other.getKey());
+        if (comparison != 0) {
+            return comparison;
+        }
+        if (System.identityHashCode(node.getKey())
+                <= System.identityHashCode(other.getKey())) {
+            return -1;
+        }
+        return 1;
+    }
+
+    TreeNode<K, V> find(int hash, Object key) {
+        return find(root, hash, key, null);
+    }
+
+    /**
+     * Returns how many nodes {@link #find(int, Object)} visits for the key.
+     */
+    int countProbes(int hash, Object key) {
+        int[] probes = new int[1];
+        find(root, hash, key, probes);
+        return probes[0];
+    }
+
+    private static <K extends Comparable, V> TreeNode<K, V> find(
+            TreeNode<K, V> start, int hash, Object key, int[] probes) {
+        TreeNode<K, V> node = start;
+        while (node != null) {
+            if (probes != null) {
+                probes[0]++;
+            }
+            if (hash < node.hash()) {
+                node = node.left;
+            } else if (hash > node.hash()) {
+                node = node.right;
+            } else if (Objects.equals(key, node.getKey())) {
+                return node;
+            } else {
+                int comparison = compareComparables(key, node.getKey());
+                if (comparison < 0) {
+                    node = node.left;
+                } else if (comparison > 0) {
+                    node = node.right;
+                } else {
+                    TreeNode<K, V> found =
+                            find(node.right, hash, key, probes);
+                    if (found != null) {
+                        return found;
+                    }
+                    node = node.left;
+                }
+            }
+        }
+        return null;
+    }
+
+    boolean contains(PriorityHashMap.Node<K, V> node) {
+        return node instanceof TreeNode
+                && find(node.hash(), node.getKey()) == node;
+    }
+
+    void add(TreeNode<K, V> node) {
+        node.prev = null;
+        node.setNext(first);
+        if (first != null) {
+            first.prev = node;
+        }
+        first = node;
+        count++;
+        node.left = null;
+        node.right = null;
+        node.red = true;
+        if (root == null) {
+            node.parent = null;
+            node.red = false;
+            root = node;
+            return;
+        }
+        TreeNode<K, V> parent = root;
+        for (;;) {
+            if (compareForInsert(node, parent) < 0) {
+                if (parent.left == null) {
+                    parent.left = node;
+                    break;
+                }
+                parent = parent.left;
+            } else {
+                if (parent.right == null) {
+                    parent.right = node;
+                    break;
+                }
+                parent = parent.right;
+            }
+        }
+        node.parent = parent;
+        balanceInsertion(node);
+    }
+
+    void remove(TreeNode<K, V> node) {
+        if (node.prev == null) {
+            first = (TreeNode<K, V>) node.next();
+        } else {
+            node.prev.setNext(node.next());
+        }
+        if (node.next() != null) {
+            ((TreeNode<K, V>) node.next()).prev = node.prev;
+        }
+        count--;
+        removeFromTree(node);
+    }
+
+    private void removeFromTree(TreeNode<K, V> node) {
+        boolean removedRed = node.red;
+        TreeNode<K, V> child;
+        TreeNode<K, V> childParent;
+        if (node.left == null) {
+            child = node.right;
+            childParent = node.parent;
+            transplant(node, node.right);
+        } else if (node.right == null) {
+            child = node.left;
+            childParent = node.parent;
+            transplant(node, node.left);
+        } else {
+            TreeNode<K, V> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            removedRed = successor.red;
+            child = successor.right;
+            if (successor.parent == node) {
+                childParent = successor;
+            } else {
+                childParent = successor.parent;
+                transplant(successor, successor.right);
+                successor.right = node.right;
+                successor.right.parent = successor;
+            }
+            transplant(node, successor);
+            successor.left = node.left;
+            successor.left.parent = successor;
+            successor.red = node.red;
+        }
+        if (!removedRed) {
+            balanceDeletion(child, childParent);
+        }
+    }
+
+    private void transplant(TreeNode<K, V> node,
+                            TreeNode<K, V> replacement) {
+        if (node.parent == null) {
+            root = replacement;
+        } else if (node == node.parent.left) {
+            node.parent.left = replacement;
+        } else {
+            node.parent.right = replacement;
+        }
+        if (replacement != null) {
+            replacement.parent = node.parent;
+        }
+    }
+
+    private void rotateLeft(TreeNode<K, V> node) {
+        TreeNode<K, V> pivot = node.right;
+        node.right = pivot.left;
+        if (pivot.left != null) {
+            pivot.left.parent = node;
+        }
+        transplant(node, pivot);
+        pivot.left = node;
+        node.parent = pivot;
+    }
+
+    private void rotateRight(TreeNode<K, V> node) {
+        TreeNode<K, V> pivot = node.left;
+        node.left = pivot.right;
+        if (pivot.right != null) {
+            pivot.right.parent = node;
+        }
+        transplant(node, pivot);
+        pivot.right = node;
+        node.parent = pivot;
+    }
+
+    private void balanceInsertion(TreeNode<K, V> insertedNode) {
+        TreeNode<K, V> node = insertedNode;
+        while (isRed(node.parent)) {
+            TreeNode<K, V> parent = node.parent;
+            TreeNode<K, V> grandParent = parent.parent;
+            if (parent == grandParent.left) {
+                TreeNode<K, V> uncle = grandParent.right;
+                if (isRed(uncle)) {
+                    parent.red = false;
+                    uncle.red = false;
+                    grandParent.red = true;
+                    node = grandParent;
+                } else {
+                    if (node == parent.right) {
+                        node = parent;
+                        rotateLeft(node);
+                        parent = node.parent;
+                    }
+                    parent.red = false;
+                    grandParent.red = true;
+                    rotateRight(grandParent);
+                }
+            } else {
+                TreeNode<K, V> uncle = grandParent.left;
+                if (isRed(uncle)) {
+                    parent.red = false;
+                    uncle.red = false;
+                    grandParent.red = true;
+                    node = grandParent;
+                } else {
+                    if (node == parent.left) {
+                        node = parent;
+                        rotateRight(node);
+                        parent = node.parent;
+                    }
+                    parent.red = false;
+                    grandParent.red = true;
+                    rotateLeft(grandParent);
+                }
+            }
+        }
+        root.red = false;
+    }
+
+    private void balanceDeletion(TreeNode<K, V> startNode,
+                                 TreeNode<K, V> startParent) {
+        TreeNode<K, V> node = startNode;
+        TreeNode<K, V> parent = startParent;
+        while (node != root && !isRed(node)) {
+            if (node == parent.left) {
+                TreeNode<K, V> sibling = parent.right;
+                if (isRed(sibling)) {
+                    sibling.red = false;
+                    parent.red = true;
+                    rotateLeft(parent);
+                    sibling = parent.right;
+                }
+                if (!isRed(sibling.left) && !isRed(sibling.right)) {
+                    sibling.red = true;
+                    node = parent;
+                    parent = node.parent;
+                } else {
+                    if (!isRed(sibling.right)) {
+                        sibling.left.red = false;
+                        sibling.red = true;
+                        rotateRight(sibling);
+                        sibling = parent.right;
+                    }
+                    sibling.red = parent.red;
+                    parent.red = false;
+                    if (sibling.right != null) {
+                        sibling.right.red = false;
+                    }
+                    rotateLeft(parent);
+                    node = root;
+                }
+            } else {
+                TreeNode<K, V> sibling = parent.left;
+                if (isRed(sibling)) {
+                    sibling.red = false;
+                    parent.red = true;
+                    rotateRight(parent);
+                    sibling = parent.left;
+                }
+                if (!isRed(sibling.left) && !isRed(sibling.right)) {
+                    sibling.red = true;
+                    node = parent;
+                    parent = node.parent;
+                } else {
+                    if (!isRed(sibling.left)) {
+                        sibling.right.red = false;
+                        sibling.red = true;
+                        rotateLeft(sibling);
+                        sibling = parent.left;
+                    }
+                    sibling.red = parent.red;
+                    parent.red = false;
+                    if (sibling.left != null) {
+                        sibling.left.red = false;
+                    }
+                    rotateRight(parent);
+                    node = root;
+                }
+            }
+        }
+        if (node != null) {
+            node.red = false;
+        }
+    }
+}
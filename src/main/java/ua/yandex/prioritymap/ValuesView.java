@@ -0,0 +1,46 @@
+package ua.yandex.prioritymap;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.Spliterator;
+
+/**
+ * Values view of a {@link PriorityHashMap}.
+ */
+final class ValuesView<K extends Comparable, V> extends AbstractCollection<V> {
+    private final PriorityHashMap<K, V> map;
+
+    ValuesView(PriorityHashMap<K, V> map) {
+        this.map = map;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new HashIterator<K, V, V>(map) {
+            @Override
+            V element(PriorityHashMap.Node<K, V> node) {
+                return node.getValue();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return map.containsValue(o);
+    }
+
+    @Override
+    public Spliterator<V> spliterator() {
+        return new HeapSpliterator<>(map, node -> node.getValue(), 0);
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+}
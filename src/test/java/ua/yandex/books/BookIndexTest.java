@@ -0,0 +1,97 @@
+package ua.yandex.books;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.yandex.tuple.Tuple;
+
+import java.util.*;
+
+public class BookIndexTest {
+
+    private static final String[] AUTHORS = {"Толстой", "Достоевский",
+            "Маркс", "Ницше", "Eckel", "Керниган", "Ритчи"};
+
+    @Test
+    public void testMatchesBookAggregations() throws Exception {
+        Random random = new Random(21);
+        BookIndex index = new BookIndex();
+        List<Book> books = new ArrayList<>();
+        for (int step = 0; step < 2000; step++) {
+            if (!books.isEmpty() && random.nextInt(3) == 0) {
+                Book removed = books.remove(random.nextInt(books.size()));
+                Assert.assertTrue(index.remove(removed));
+                Assert.assertFalse(index.remove(removed));
+            } else if (!books.isEmpty() && random.nextInt(4) == 0) {
+                int position = random.nextInt(books.size());
+                Book replacement = randomBook(random, step);
+                index.update(books.get(position), replacement);
+                books.remove(position);
+                books.add(replacement);
+            } else {
+                Book book = randomBook(random, step);
+                index.add(book);
+                books.add(book);
+            }
+            if (step % 50 == 0) {
+                assertMatches(books, index);
+            }
+        }
+        assertMatches(books, index);
+        Assert.assertEquals(books.size(), index.size());
+    }
+
+    @Test
+    public void testYearWithoutAuthors() throws Exception {
+        Book book = new Book(new ArrayList<>(), "null", null, 0);
+        BookIndex index = new BookIndex(Arrays.asList(book));
+        Assert.assertEquals(Collections.singletonMap(0, new HashSet<>()),
+                index.findTopAuthorsPerEachYear());
+        index.remove(book);
+        Assert.assertTrue(index.findTopAuthorsPerEachYear().isEmpty());
+        Assert.assertTrue(index.findTopicsWithTheMostNumberOfBooks()
+                .isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddTwice() throws Exception {
+        Book book = new Book(Arrays.asList("Ницше"),
+                "Так говорил Заратустра", Topic.FANTASY, 1885);
+        BookIndex index = new BookIndex();
+        index.add(book);
+        index.add(book);
+    }
+
+    private static Book randomBook(Random random, int step) {
+        List<String> authors = new ArrayList<>();
+        int authorsNumber = random.nextInt(3);
+        for (int number = 0; number < authorsNumber; number++) {
+            String author = AUTHORS[random.nextInt(AUTHORS.length)];
+            if (!authors.contains(author)) {
+                authors.add(author);
+            }
+        }
+        Topic[] topics = Topic.values();
+        Topic topic = topics[random.nextInt(topics.length)];
+        return new Book(authors, "Book " + step, topic,
+                1860 + random.nextInt(5));
+    }
+
+    private static void assertMatches(List<Book> books, BookIndex index) {
+        Assert.assertEquals(Book.groupBooksByAuthors(books),
+                index.groupBooksByAuthors());
+        Assert.assertEquals(Book.findTopAuthorsPerEachYear(books),
+                index.findTopAuthorsPerEachYear());
+        Assert.assertEquals(
+                toMap(Book.findTopicsWithTheMostNumberOfBooks(books)),
+                toMap(index.findTopicsWithTheMostNumberOfBooks()));
+    }
+
+    private static Map<Topic, List<String>> toMap(
+            Set<Tuple<Topic, List<String>>> topics) {
+        Map<Topic, List<String>> map = new HashMap<>();
+        for (Tuple<Topic, List<String>> tuple : topics) {
+            map.put(tuple.getFirstObject(), tuple.getSecondObject());
+        }
+        return map;
+    }
+}
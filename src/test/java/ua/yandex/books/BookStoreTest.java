@@ -0,0 +1,79 @@
+package ua.yandex.books;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.yandex.tuple.Tuple;
+
+import java.util.*;
+
+public class BookStoreTest {
+
+    @Test
+    public void testAggregationsMatchBook() throws Exception {
+        Random random = new Random(24);
+        Topic[] topics = Topic.values();
+        List<Book> books = new ArrayList<>();
+        for (int index = 0; index < 5000; index++) {
+            List<String> authors = new ArrayList<>();
+            for (int author = random.nextInt(4); author > 0; author--) {
+                authors.add("Автор " + random.nextInt(80));
+            }
+            Topic topic = null;
+            if (random.nextInt(5) > 0) {
+                topic = topics[random.nextInt(topics.length)];
+            }
+            books.add(new Book(authors, "Книга " + index, topic, 1990 + random.nextInt(30) - 15));
+        }
+        BookStore store = new BookStore(books);
+        Assert.assertEquals(books.size(), store.size());
+        Assert.assertEquals(titlesOf(Book.groupBooksByAuthors(books)), titlesOf(store.groupBooksByAuthors()));
+        Assert.assertEquals(Book.findTopAuthorsPerEachYear(books), store.findTopAuthorsPerEachYear());
+        Assert.assertEquals(toMap(Book.findTopicsWithTheMostNumberOfBooks(books)),
+                toMap(store.findTopicsWithTheMostNumberOfBooks()));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Book book = new Book(Arrays.asList("Брайан Керниган", "Деннис Ритчи"), "Язык программирования C", Topic.COMPUTING, -1);
+        Book nullBook = new Book(new ArrayList<>(), "null", null, 0);
+        BookStore store = new BookStore(Arrays.asList(book, nullBook, book));
+        Assert.assertEquals(2, store.authorCount());
+        Book decoded = store.getBook(2);
+        Assert.assertEquals(book.getAuthors(), decoded.getAuthors());
+        Assert.assertEquals(book.getTitle(), decoded.getTitle());
+        Assert.assertEquals(Topic.COMPUTING, decoded.getTopic());
+        Assert.assertEquals(-1, decoded.getYearOfPublishing());
+        Assert.assertNull(store.getBook(1).getTopic());
+        Assert.assertEquals(Collections.emptySet(), store.findTopAuthorsPerEachYear().get(0));
+        Assert.assertEquals(2, store.groupBooksByAuthors().get("Деннис Ритчи").size());
+    }
+
+    @Test
+    public void testEmptyStore() throws Exception {
+        BookStore store = new BookStore();
+        Assert.assertTrue(store.groupBooksByAuthors().isEmpty());
+        Assert.assertTrue(store.findTopAuthorsPerEachYear().isEmpty());
+        Assert.assertTrue(store.findTopicsWithTheMostNumberOfBooks().isEmpty());
+    }
+
+    private static Map<String, List<String>> titlesOf(Map<String, List<Book>> groupedBooks) {
+        Map<String, List<String>> titles = new HashMap<>();
+        for (Map.Entry<String, List<Book>> entry : groupedBooks.entrySet()) {
+            List<String> authorTitles = new ArrayList<>();
+            for (Book book : entry.getValue()) {
+                authorTitles.add(book.getTitle());
+            }
+            titles.put(entry.getKey(), authorTitles);
+        }
+        return titles;
+    }
+
+    private static Map<Topic, List<String>> toMap(
+            Set<Tuple<Topic, List<String>>> topics) {
+        Map<Topic, List<String>> map = new HashMap<>();
+        for (Tuple<Topic, List<String>> tuple : topics) {
+            map.put(tuple.getFirstObject(), tuple.getSecondObject());
+        }
+        return map;
+    }
+}
@@ -60,4 +60,26 @@ public class BookTest {
         Assert.assertTrue(topTopicsMap.get(Topic.CLASSICS).containsAll(Arrays.asList("Война и мир", "Преступление и наказание", "Идиотъ")));
         Assert.assertTrue(topTopicsMap.get(Topic.COMPUTING).containsAll(Arrays.asList("Язык программирования C", "Some book2", "Thinking in Java")));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParallelAggregationsMatchSequential() throws Exception {
+        Random random = new Random(22);
+        Topic[] topics = Topic.values();
+        List<Book> books = new ArrayList<>();
+        for (int index = 0; index < 5000; index++) {
+            List<String> authors = new ArrayList<>();
+            for (int author = random.nextInt(3); author > 0; author--) {
+                authors.add("Author " + random.nextInt(50));
+            }
+            books.add(new Book(authors, "Book " + index, topics[random.nextInt(topics.length)], 1900 + random.nextInt(10)));
+        }
+        Assert.assertEquals(Book.groupBooksByAuthors(books), Book.groupBooksByAuthors(books, 64));
+        Assert.assertEquals(Book.findTopAuthorsPerEachYear(books), Book.findTopAuthorsPerEachYear(books, 64));
+        Set<Tuple<Topic, List<String>>> parallelTopics = Book.findTopicsWithTheMostNumberOfBooks(new LinkedList<>(books), 1);
+        Set<Tuple<Topic, List<String>>> sequentialTopics = Book.findTopicsWithTheMostNumberOfBooks(books);
+        Assert.assertEquals(sequentialTopics.size(), parallelTopics.size());
+        for (Tuple<Topic, List<String>> tuple : parallelTopics) {
+            Assert.assertTrue(new ArrayList<>(sequentialTopics).contains(tuple));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ua.yandex.books;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ua.yandex.tuple.Tuple;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class CatalogReaderTest {
+
+    @Test
+    public void testStreamedAggregationsMatchBook() throws Exception {
+        Random random = new Random(23);
+        Topic[] topics = Topic.values();
+        StringBuilder catalog = new StringBuilder();
+        for (int index = 0; index < 20000; index++) {
+            catalog.append("Книга ").append(index).append('\t');
+            int authors = random.nextInt(3);
+            for (int author = 0; author < authors; author++) {
+                if (author > 0) {
+                    catalog.append(';');
+                }
+                catalog.append("Автор ").append(random.nextInt(100));
+            }
+            catalog.append('\t');
+            int topic = random.nextInt(topics.length + 1);
+            if (topic < topics.length) {
+                catalog.append(topics[topic].name());
+            }
+            catalog.append('\t').append(1900 + random.nextInt(20));
+            if (index % 7 == 0) {
+                catalog.append('\r');
+            }
+            catalog.append('\n');
+        }
+        char[] longTitle = new char[100000];
+        Arrays.fill(longTitle, 'x');
+        catalog.append('\n').append(longTitle).append("\tEckel\tCOMPUTING\t2006");
+        Path file = Files.createTempFile("catalog", ".tsv");
+        try {
+            Files.write(file, catalog.toString().getBytes(StandardCharsets.UTF_8));
+            List<Book> books = new ArrayList<>();
+            CatalogAggregator aggregator = new CatalogAggregator();
+            CatalogReader.read(file, books::add);
+            CatalogReader.read(file, aggregator);
+            Assert.assertEquals(20001, books.size());
+            Assert.assertEquals(100000, books.get(20000).getTitle().length());
+            Assert.assertEquals(Book.groupBooksByAuthors(books).toString(),
+                    aggregator.groupBooksByAuthors().toString());
+            Assert.assertEquals(Book.findTopAuthorsPerEachYear(books),
+                    aggregator.findTopAuthorsPerEachYear());
+            Assert.assertEquals(toMap(Book.findTopicsWithTheMostNumberOfBooks(books)),
+                    toMap(aggregator.findTopicsWithTheMostNumberOfBooks()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testParsesFields() throws Exception {
+        Path file = Files.createTempFile("catalog", ".tsv");
+        try {
+            Files.write(file, "Идиотъ\tДостоевский\tCLASSICS\t1869\nnull\t\t\t0"
+                    .getBytes(StandardCharsets.UTF_8));
+            List<Book> books = new ArrayList<>();
+            CatalogReader.read(file, books::add);
+            Assert.assertEquals("Идиотъ", books.get(0).getTitle());
+            Assert.assertEquals(Arrays.asList("Достоевский"), books.get(0).getAuthors());
+            Assert.assertEquals(Topic.CLASSICS, books.get(0).getTopic());
+            Assert.assertEquals(1869, books.get(0).getYearOfPublishing());
+            Assert.assertTrue(books.get(1).getAuthors().isEmpty());
+            Assert.assertNull(books.get(1).getTopic());
+            Assert.assertEquals(0, books.get(1).getYearOfPublishing());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedLine() throws Exception {
+        Path file = Files.createTempFile("catalog", ".tsv");
+        try {
+            Files.write(file, "Капитал\tМаркс\tFICTION\n".getBytes(StandardCharsets.UTF_8));
+            CatalogReader.read(file, book -> { });
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testYearOverflow() throws Exception {
+        Path file = Files.createTempFile("catalog", ".tsv");
+        try {
+            Files.write(file, "Капитал\tМаркс\tFICTION\t18670000000\n".getBytes(StandardCharsets.UTF_8));
+            CatalogReader.read(file, book -> { });
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLargestYear() throws Exception {
+        Path file = Files.createTempFile("catalog", ".tsv");
+        try {
+            Files.write(file, "Капитал\tМаркс\tFICTION\t2147483647\n".getBytes(StandardCharsets.UTF_8));
+            List<Book> books = new ArrayList<>();
+            CatalogReader.read(file, books::add);
+            Assert.assertEquals(Integer.MAX_VALUE, books.get(0).getYearOfPublishing());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static Map<Topic, List<String>> toMap(
+            Set<Tuple<Topic, List<String>>> topics) {
+        Map<Topic, List<String>> map = new HashMap<>();
+        for (Tuple<Topic, List<String>> tuple : topics) {
+            map.put(tuple.getFirstObject(), tuple.getSecondObject());
+        }
+        return map;
+    }
+}
@@ -0,0 +1,51 @@
+package ua.yandex.books;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class FrequencyCounterTest {
+
+    @Test
+    public void testMatchesHashMapCounts() throws Exception {
+        Random random = new Random(25);
+        FrequencyCounter<String> counter = new FrequencyCounter<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 50000; step++) {
+            String key = null;
+            if (random.nextInt(100) > 0) {
+                key = "Автор " + random.nextInt(3000);
+            }
+            expected.merge(key, 1, Integer::sum);
+            Assert.assertEquals((int) expected.get(key), counter.increment(key));
+        }
+        Assert.assertEquals(expected.size(), counter.size());
+        int maxCount = Collections.max(expected.values());
+        Assert.assertEquals(maxCount, counter.maxCount());
+        Set<String> mostFrequent = new HashSet<>();
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            Assert.assertEquals((int) entry.getValue(), counter.count(entry.getKey()));
+            if (entry.getValue() == maxCount) {
+                mostFrequent.add(entry.getKey());
+            }
+        }
+        Assert.assertEquals(mostFrequent, counter.mostFrequent());
+        Assert.assertEquals(0, counter.count("Нет такого"));
+    }
+
+    @Test
+    public void testAddAll() throws Exception {
+        FrequencyCounter<String> first = new FrequencyCounter<>();
+        FrequencyCounter<String> second = new FrequencyCounter<>();
+        first.increment("Толстой");
+        first.increment("Достоевский");
+        second.increment("Достоевский");
+        second.increment(null);
+        first.addAll(second);
+        Assert.assertEquals(2, first.count("Достоевский"));
+        Assert.assertEquals(1, first.count(null));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("Достоевский")), first.mostFrequent());
+        Assert.assertTrue(new FrequencyCounter<String>().mostFrequent().isEmpty());
+    }
+}
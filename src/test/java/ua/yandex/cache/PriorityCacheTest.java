@@ -0,0 +1,159 @@
+package ua.yandex.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+public class PriorityCacheTest {
+
+    @Test
+    public void testLruEvictsLeastRecentlyUsed() throws Exception {
+        PriorityCache<String, Integer> cache =
+                new PriorityCache<>(CachePolicy.LRU, 3);
+        List<String> removed = new ArrayList<>();
+        cache.setRemovalListener((key, value) -> removed.add(key));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        Assert.assertEquals(1, (int) cache.get("a"));
+        cache.put("d", 4);
+        Assert.assertEquals(Collections.singletonList("b"), removed);
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(3, cache.size());
+        CacheStatistics statistics = cache.getStatistics();
+        Assert.assertEquals(1, statistics.getHits());
+        Assert.assertEquals(1, statistics.getMisses());
+        Assert.assertEquals(1, statistics.getEvictions());
+        Assert.assertEquals(0.5, statistics.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testZeroMaximumSizeRejectsEveryEntry() throws Exception {
+        PriorityCache<String, Integer> cache =
+                new PriorityCache<>(CachePolicy.LRU, 0);
+        List<String> removed = new ArrayList<>();
+        cache.setRemovalListener((key, value) -> removed.add(key));
+        Assert.assertNull(cache.put("a", 1));
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(Collections.singletonList("a"), removed);
+        Assert.assertEquals(1, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void testLfuEvictsLeastFrequentlyUsed() throws Exception {
+        PriorityCache<String, Integer> cache =
+                new PriorityCache<>(CachePolicy.LFU, 2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        cache.put("c", 3);
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(1, (int) cache.get("a"));
+        Assert.assertEquals(3, (int) cache.get("c"));
+        cache.put("d", 4);
+        Assert.assertNull(cache.get("c"));
+        Assert.assertEquals(4, (int) cache.get("d"));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        long[] time = {0};
+        PriorityCache<String, Integer> cache =
+                new PriorityCache<>(CachePolicy.TTL, 10, () -> time[0]);
+        cache.setExpireAfterWrite(10, TimeUnit.NANOSECONDS);
+        cache.put("a", 1);
+        time[0] = 5;
+        cache.put("b", 2);
+        Assert.assertEquals(1, (int) cache.get("a"));
+        time[0] = 10;
+        Assert.assertNull(cache.get("a"));
+        cache.put("c", 3);
+        time[0] = 15;
+        cache.put("d", 4);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(2, cache.getStatistics().getExpirations());
+        time[0] = 100;
+        cache.cleanUp();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLazyExpiryWithLru() throws Exception {
+        long[] time = {0};
+        PriorityCache<Integer, Integer> cache =
+                new PriorityCache<>(CachePolicy.LRU, 10, () -> time[0]);
+        cache.setExpireAfterWrite(1, TimeUnit.SECONDS);
+        for (int key = 0; key < 5; key++) {
+            cache.put(key, key);
+        }
+        time[0] = TimeUnit.SECONDS.toNanos(2);
+        cache.put(5, 5);
+        Assert.assertEquals(6, cache.size());
+        cache.cleanUp();
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(5, (int) cache.get(5));
+    }
+
+    @Test
+    public void testMaximumWeight() throws Exception {
+        PriorityCache<String, String> cache =
+                new PriorityCache<>(CachePolicy.LRU, 100);
+        cache.setMaximumWeight(10, (key, value) -> value.length());
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        cache.put("c", "cccc");
+        Assert.assertEquals(8, cache.getTotalWeight());
+        Assert.assertNull(cache.get("a"));
+        cache.put("huge", "xxxxxxxxxxxx");
+        Assert.assertNull(cache.get("huge"));
+        cache.put("b", "b");
+        Assert.assertEquals(5, cache.getTotalWeight());
+        cache.invalidate("c");
+        Assert.assertEquals(1, cache.getTotalWeight());
+    }
+
+    private static int cachedPopularKeys(CachePolicy policy) {
+        PriorityCache<Integer, Integer> cache = new PriorityCache<>(policy, 10);
+        for (int scanKey = 1000; scanKey < 3000; scanKey++) {
+            cache.get(scanKey % 10, Integer::valueOf);
+            cache.get(scanKey, Integer::valueOf);
+        }
+        int popularKeys = 0;
+        for (int key = 0; key < 10; key++) {
+            if (cache.get(key) != null) {
+                popularKeys++;
+            }
+        }
+        return popularKeys;
+    }
+
+    @Test
+    public void testTinyLfuKeepsPopularKeys() throws Exception {
+        Assert.assertEquals(10, cachedPopularKeys(CachePolicy.TINY_LFU));
+        Assert.assertTrue(cachedPopularKeys(CachePolicy.LRU) < 10);
+    }
+
+    @Test
+    public void testTinyLfuRejectsLoadedOneOffKey() throws Exception {
+        PriorityCache<String, Integer> cache =
+                new PriorityCache<>(CachePolicy.TINY_LFU, 2);
+        List<String> removed = new ArrayList<>();
+        cache.setRemovalListener((key, value) -> removed.add(key));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        Assert.assertEquals(3, (int) cache.get("c", key -> 3));
+        Assert.assertEquals(Collections.singletonList("c"), removed);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getStatistics().getEvictions());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() throws Exception {
+        new PriorityCache<String, String>(CachePolicy.LRU, 1).put("a", null);
+    }
+}
@@ -0,0 +1,115 @@
+package ua.yandex.prioritymap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentPriorityHashMapTest {
+
+    @Test
+    public void testSingleQueueIsExact() throws Exception {
+        ConcurrentPriorityHashMap<Integer, Integer> map =
+                new ConcurrentPriorityHashMap<>(0, 1);
+        int size = 300;
+        for (int index = 0; index < size; index++) {
+            map.put(index, index + 1);
+        }
+        for (int index = size; index > 0; index--) {
+            Assert.assertEquals(index, (int) map.peekValueWithPriorityKey());
+            Assert.assertEquals(index, (int) map.pollValueWithPriorityKey());
+        }
+        Assert.assertNull(map.pollValueWithPriorityKey());
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testMapOperations() throws Exception {
+        ConcurrentPriorityHashMap<String, Integer> map =
+                new ConcurrentPriorityHashMap<>();
+        Assert.assertNull(map.put("a", 1));
+        Assert.assertEquals(1, (int) map.put("a", 2));
+        Assert.assertEquals(2, (int) map.putIfAbsent("a", 3));
+        Assert.assertFalse(map.replace("a", 1, 4));
+        Assert.assertTrue(map.replace("a", 2, 4));
+        Assert.assertFalse(map.remove("a", 2));
+        Assert.assertTrue(map.containsValue(4));
+        Assert.assertTrue(map.remove("a", 4));
+        Assert.assertNull(map.get("a"));
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.pollValueWithPriorityKey());
+    }
+
+    @Test
+    public void testEntrySetMatchesHashMap() throws Exception {
+        ConcurrentPriorityHashMap<String, Integer> map =
+                new ConcurrentPriorityHashMap<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int index = 0; index < 100; index++) {
+            map.put("key" + index, index);
+            expected.put("key" + index, index);
+        }
+        Assert.assertEquals(expected.entrySet(), map.entrySet());
+        Assert.assertEquals(map.entrySet(), expected.entrySet());
+        Assert.assertEquals(expected.entrySet().hashCode(),
+                map.entrySet().hashCode());
+        Assert.assertTrue(map.entrySet().contains(
+                new AbstractMap.SimpleEntry<>("key7", 7)));
+        Assert.assertFalse(map.entrySet().contains(
+                new AbstractMap.SimpleEntry<>("key7", 8)));
+        Assert.assertTrue(map.entrySet().containsAll(expected.entrySet()));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullKeyIsRejected() throws Exception {
+        new ConcurrentPriorityHashMap<Integer, Integer>().put(null, 1);
+    }
+
+    @Test
+    public void testConcurrentPutAndPoll() throws Exception {
+        ConcurrentPriorityHashMap<Integer, Integer> map =
+                new ConcurrentPriorityHashMap<>();
+        int threads = 4;
+        int keysPerThread = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            int offset = thread * keysPerThread;
+            futures.add(executor.submit(() -> {
+                for (int index = 0; index < keysPerThread; index++) {
+                    map.put(offset + index, offset + index);
+                    if (index % 3 == 0) {
+                        map.remove(offset + index);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        int expectedSize = map.size();
+        Set<Integer> polled = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        futures.clear();
+        for (int thread = 0; thread < threads; thread++) {
+            futures.add(executor.submit(() -> {
+                Integer value = map.pollValueWithPriorityKey();
+                while (value != null) {
+                    if (!polled.add(value)) {
+                        duplicates.incrementAndGet();
+                    }
+                    value = map.pollValueWithPriorityKey();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        Assert.assertEquals(0, duplicates.get());
+        Assert.assertEquals(expectedSize, polled.size());
+        Assert.assertTrue(map.isEmpty());
+    }
+}
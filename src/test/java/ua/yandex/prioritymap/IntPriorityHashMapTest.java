@@ -0,0 +1,71 @@
+package ua.yandex.prioritymap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class IntPriorityHashMapTest {
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        IntPriorityHashMap<String> map = new IntPriorityHashMap<>(0);
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(3);
+        for (int step = 0; step < 20000; step++) {
+            int key = random.nextInt(1000) - 500;
+            if (random.nextInt(3) > 0) {
+                Assert.assertEquals(expected.put(key, "v" + step),
+                        map.put(key, "v" + step));
+            } else {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        Assert.assertEquals(expected.size(), map.size());
+        for (int key = -500; key < 500; key++) {
+            Assert.assertEquals(expected.containsKey(key),
+                    map.containsKey(key));
+            Assert.assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    public void testPollValueWithPriorityKey() throws Exception {
+        IntPriorityHashMap<Integer> map = new IntPriorityHashMap<>();
+        map.put(Integer.MIN_VALUE, Integer.MIN_VALUE);
+        map.put(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        for (int key = -100; key < 100; key++) {
+            map.put(key, key);
+        }
+        Assert.assertEquals(Integer.MAX_VALUE, map.peekPriorityKey());
+        Assert.assertEquals(Integer.MAX_VALUE,
+                (int) map.pollValueWithPriorityKey());
+        for (int key = 99; key >= -100; key--) {
+            Assert.assertEquals(key, (int) map.pollValueWithPriorityKey());
+        }
+        Assert.assertEquals(Integer.MIN_VALUE,
+                (int) map.pollValueWithPriorityKey());
+        Assert.assertNull(map.pollValueWithPriorityKey());
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testPeekPriorityKeyOfEmptyMap() throws Exception {
+        new IntPriorityHashMap<String>().peekPriorityKey();
+    }
+
+    @Test
+    public void testKeysAndClear() throws Exception {
+        IntPriorityHashMap<String> map = new IntPriorityHashMap<>();
+        map.put(3, "c");
+        map.put(1, "a");
+        map.put(2, "b");
+        int[] keys = map.keys();
+        Arrays.sort(keys);
+        Assert.assertArrayEquals(new int[]{1, 2, 3}, keys);
+        Assert.assertTrue(map.containsValue("b"));
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertFalse(map.containsKey(1));
+    }
+}
@@ -0,0 +1,71 @@
+package ua.yandex.prioritymap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class LongPriorityHashMapTest {
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        LongPriorityHashMap<String> map = new LongPriorityHashMap<>(0);
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(5);
+        for (int step = 0; step < 20000; step++) {
+            long key = random.nextInt(1000) - 500L;
+            if (random.nextInt(3) > 0) {
+                Assert.assertEquals(expected.put(key, "v" + step),
+                        map.put(key, "v" + step));
+            } else {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        Assert.assertEquals(expected.size(), map.size());
+        for (long key = -500; key < 500; key++) {
+            Assert.assertEquals(expected.containsKey(key),
+                    map.containsKey(key));
+            Assert.assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    public void testPollValueWithPriorityKey() throws Exception {
+        LongPriorityHashMap<Long> map = new LongPriorityHashMap<>();
+        map.put(Long.MIN_VALUE, Long.MIN_VALUE);
+        map.put(Long.MAX_VALUE, Long.MAX_VALUE);
+        for (long key = -100; key < 100; key++) {
+            map.put(key, key);
+        }
+        Assert.assertEquals(Long.MAX_VALUE, map.peekPriorityKey());
+        Assert.assertEquals(Long.MAX_VALUE,
+                (long) map.pollValueWithPriorityKey());
+        for (long key = 99; key >= -100; key--) {
+            Assert.assertEquals(key, (long) map.pollValueWithPriorityKey());
+        }
+        Assert.assertEquals(Long.MIN_VALUE,
+                (long) map.pollValueWithPriorityKey());
+        Assert.assertNull(map.pollValueWithPriorityKey());
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testPeekPriorityKeyOfEmptyMap() throws Exception {
+        new LongPriorityHashMap<String>().peekPriorityKey();
+    }
+
+    @Test
+    public void testKeysAndClear() throws Exception {
+        LongPriorityHashMap<String> map = new LongPriorityHashMap<>();
+        map.put(3L, "c");
+        map.put(1L, "a");
+        map.put(2L, "b");
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        Assert.assertArrayEquals(new long[]{1, 2, 3}, keys);
+        Assert.assertTrue(map.containsValue("b"));
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertFalse(map.containsKey(1L));
+    }
+}
@@ -0,0 +1,133 @@
+package ua.yandex.prioritymap;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.*;
+
+public class OffHeapPriorityHashMapTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPutGetAndRemove() throws Exception {
+        OffHeapPriorityHashMap<Integer, String> map =
+                new OffHeapPriorityHashMap<>(Serializers.INTEGER,
+                        Serializers.STRING, 0);
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(11);
+        for (int step = 0; step < 20000; step++) {
+            int key = random.nextInt(700);
+            if (random.nextInt(3) > 0) {
+                String value = "value"
+                        + random.nextInt(1 << random.nextInt(20));
+                Assert.assertEquals(expected.put(key, value),
+                        map.put(key, value));
+            } else {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        Assert.assertEquals(expected.size(), map.size());
+        for (int key = 0; key < 700; key++) {
+            Assert.assertEquals(expected.get(key), map.get(key));
+        }
+        Assert.assertEquals(expected, new HashMap<>(map));
+    }
+
+    @Test
+    public void testPollInPriorityOrder() throws Exception {
+        OffHeapPriorityHashMap<Integer, Integer> map =
+                new OffHeapPriorityHashMap<>(Serializers.INTEGER,
+                        Serializers.INTEGER);
+        List<Integer> keys = new ArrayList<>();
+        for (int key = 0; key < 500; key++) {
+            keys.add(key);
+        }
+        Collections.shuffle(keys, new Random(3));
+        for (int key : keys) {
+            map.put(key, -key);
+        }
+        map.put(null, 1);
+        Assert.assertEquals(-499, (int) map.peekValueWithPriorityKey());
+        for (int key = 499; key >= 0; key--) {
+            Assert.assertEquals(-key, (int) map.pollValueWithPriorityKey());
+        }
+        Assert.assertEquals(1, (int) map.pollValueWithPriorityKey());
+        Assert.assertNull(map.pollValueWithPriorityKey());
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testNullKeyAndValue() throws Exception {
+        OffHeapPriorityHashMap<String, String> map =
+                new OffHeapPriorityHashMap<>(Serializers.STRING,
+                        Serializers.STRING);
+        map.put(null, null);
+        map.put("", "");
+        Assert.assertTrue(map.containsKey(null));
+        Assert.assertTrue(map.containsValue(null));
+        Assert.assertNull(map.get(null));
+        Assert.assertEquals("", map.get(""));
+        Assert.assertEquals(2, map.size());
+        Assert.assertNull(map.remove(null));
+        Assert.assertFalse(map.containsKey(null));
+    }
+
+    @Test
+    public void testLargeValuesAndClear() throws Exception {
+        OffHeapPriorityHashMap<Long, String> map =
+                new OffHeapPriorityHashMap<>(Serializers.LONG,
+                        Serializers.STRING);
+        char[] chars = new char[10000];
+        Arrays.fill(chars, 'x');
+        String longValue = new String(chars);
+        for (long key = 0; key < 100; key++) {
+            map.put(key, longValue + key);
+        }
+        Assert.assertEquals(longValue + 42, map.get(42L));
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.get(42L));
+        map.put(1L, "a");
+        Assert.assertEquals(Collections.singletonMap(1L, "a"),
+                new HashMap<>(map));
+    }
+
+    @Test
+    public void testReopenFromFile() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("map");
+        try (OffHeapPriorityHashMap<Integer, String> map =
+                     OffHeapPriorityHashMap.open(file, Serializers.INTEGER,
+                             Serializers.STRING)) {
+            for (int key = 0; key < 1000; key++) {
+                map.put(key, "v" + key);
+            }
+            for (int key = 0; key < 1000; key += 2) {
+                map.remove(key);
+            }
+            map.put(1, "updated value");
+        }
+        try (OffHeapPriorityHashMap<Integer, String> map =
+                     OffHeapPriorityHashMap.open(file, Serializers.INTEGER,
+                             Serializers.STRING)) {
+            Assert.assertEquals(500, map.size());
+            Assert.assertEquals("updated value", map.get(1));
+            Assert.assertEquals("v999", map.peekValueWithPriorityKey());
+            Assert.assertNull(map.get(2));
+            map.put(2000, "v2000");
+            Assert.assertEquals("v2000", map.pollValueWithPriorityKey());
+            Assert.assertEquals("v999", map.pollValueWithPriorityKey());
+        }
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void testOpenRejectsForeignFile() throws Exception {
+        Path file = folder.newFile("foreign").toPath();
+        java.nio.file.Files.write(file, new byte[64]);
+        OffHeapPriorityHashMap.open(file, Serializers.INTEGER,
+                Serializers.STRING);
+    }
+}
@@ -0,0 +1,107 @@
+package ua.yandex.prioritymap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class OpenAddressingPriorityHashMapTest {
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        OpenAddressingPriorityHashMap<Integer, Integer> map =
+                new OpenAddressingPriorityHashMap<>(0);
+        int size = 300;
+        for (int index = 0; index < size; index++) {
+            map.put(index, index + 1);
+        }
+        Assert.assertEquals(size, map.size());
+        for (int index = 0; index < size; index++) {
+            Assert.assertEquals(index + 1, (int) map.get(index));
+        }
+        Assert.assertNull(map.get(size));
+    }
+
+    @Test
+    public void testNullKeyAndValue() throws Exception {
+        OpenAddressingPriorityHashMap<Integer, Integer> map =
+                new OpenAddressingPriorityHashMap<>();
+        map.put(null, null);
+        Assert.assertTrue(map.containsKey(null));
+        Assert.assertNull(map.get(null));
+        map.put(null, 7);
+        Assert.assertEquals(7, (int) map.get(null));
+        Assert.assertEquals(1, map.size());
+        Assert.assertEquals(7, (int) map.remove(null));
+        Assert.assertFalse(map.containsKey(null));
+    }
+
+    @Test
+    public void testRemoveKeepsProbeChains() throws Exception {
+        OpenAddressingPriorityHashMap<Integer, Integer> map =
+                new OpenAddressingPriorityHashMap<>(0, 0.9f);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int step = 0; step < 20000; step++) {
+            int key = random.nextInt(500);
+            if (random.nextBoolean()) {
+                Assert.assertEquals(expected.put(key, step),
+                        map.put(key, step));
+            } else {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        Assert.assertEquals(expected.size(), map.size());
+        for (int key = 0; key < 500; key++) {
+            Assert.assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    public void testPollValueWithPriorityKey() throws Exception {
+        OpenAddressingPriorityHashMap<Integer, Integer> map =
+                new OpenAddressingPriorityHashMap<>(0);
+        int size = 300;
+        map.put(null, null);
+        for (int index = 0; index < size; index++) {
+            map.put(index, index + 1);
+        }
+        for (int index = size; index > 0; index--) {
+            Assert.assertEquals(index, (int) map.peekValueWithPriorityKey());
+            Assert.assertEquals(index, (int) map.pollValueWithPriorityKey());
+        }
+        Assert.assertEquals(1, map.size());
+        Assert.assertNull(map.pollValueWithPriorityKey());
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testViews() throws Exception {
+        OpenAddressingPriorityHashMap<String, Integer> map =
+                new OpenAddressingPriorityHashMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")),
+                new HashSet<>(map.keySet()));
+        Assert.assertTrue(map.values().containsAll(Arrays.asList(1, 2, 3)));
+        Assert.assertEquals(3, map.values().size());
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            entry.setValue(entry.getValue() * 10);
+        }
+        Assert.assertEquals(20, (int) map.get("b"));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        OpenAddressingPriorityHashMap<Integer, Integer> map =
+                new OpenAddressingPriorityHashMap<>();
+        for (int index = 0; index < 100; index++) {
+            map.put(index, index);
+        }
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertFalse(map.containsKey(5));
+        Assert.assertNull(map.peekValueWithPriorityKey());
+    }
+}
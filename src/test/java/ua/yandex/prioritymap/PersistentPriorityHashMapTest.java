@@ -0,0 +1,174 @@
+package ua.yandex.prioritymap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class PersistentPriorityHashMapTest {
+
+    @Test
+    public void testMatchesTreeMap() throws Exception {
+        PersistentPriorityHashMap<Integer, Integer> map =
+                new PersistentPriorityHashMap<>();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(5);
+        for (int step = 0; step < 20000; step++) {
+            int key = random.nextInt(2000);
+            int operation = random.nextInt(4);
+            if (operation == 0) {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            } else if (operation == 1 && !expected.isEmpty()) {
+                Assert.assertEquals(expected.pollLastEntry().getValue(),
+                        map.pollValueWithPriorityKey());
+            } else {
+                Assert.assertEquals(expected.put(key, step),
+                        map.put(key, step));
+            }
+            Assert.assertEquals(expected.size(), map.size());
+        }
+        Assert.assertEquals(expected, new HashMap<>(map));
+        Assert.assertEquals(expected.lastEntry().getValue(),
+                map.peekValueWithPriorityKey());
+        while (!expected.isEmpty()) {
+            Assert.assertEquals(expected.pollLastEntry().getValue(),
+                    map.pollValueWithPriorityKey());
+        }
+        Assert.assertNull(map.pollValueWithPriorityKey());
+    }
+
+    @Test
+    public void testSnapshotIsUnaffectedByWrites() throws Exception {
+        PersistentPriorityHashMap<Integer, String> map =
+                new PersistentPriorityHashMap<>();
+        for (int key = 0; key < 100; key++) {
+            map.put(key, "v" + key);
+        }
+        PersistentPriorityHashMap<Integer, String> snapshot = map.snapshot();
+        map.put(1000, "new");
+        map.put(5, "changed");
+        map.remove(6);
+        map.pollValueWithPriorityKey();
+        map.pollValueWithPriorityKey();
+        Assert.assertEquals(100, snapshot.size());
+        Assert.assertEquals("v5", snapshot.get(5));
+        Assert.assertEquals("v6", snapshot.get(6));
+        Assert.assertFalse(snapshot.containsKey(1000));
+        Assert.assertEquals("v99", snapshot.peekValueWithPriorityKey());
+        Assert.assertEquals("changed", map.get(5));
+        Assert.assertEquals("v98", map.peekValueWithPriorityKey());
+    }
+
+    @Test
+    public void testPriorityIterator() throws Exception {
+        PersistentPriorityHashMap<Integer, Integer> map =
+                new PersistentPriorityHashMap<>();
+        for (int key = 0; key < 200; key++) {
+            map.put(key * 7919 % 200, key);
+        }
+        for (int key = 0; key < 200; key += 3) {
+            map.remove(key);
+        }
+        map.put(0, 0);
+        map.put(null, null);
+        Iterator<Map.Entry<Integer, Integer>> iterator =
+                map.snapshot().priorityIterator();
+        List<Integer> keys = new ArrayList<>();
+        while (iterator.hasNext()) {
+            keys.add(iterator.next().getKey());
+        }
+        Assert.assertEquals(map.size(), keys.size());
+        Assert.assertNull(keys.get(keys.size() - 1));
+        for (int index = 1; index < keys.size() - 1; index++) {
+            Assert.assertTrue(keys.get(index - 1) > keys.get(index));
+        }
+    }
+
+    @Test
+    public void testCollidingKeys() throws Exception {
+        PersistentPriorityHashMap<CollidingKey, Integer> map =
+                new PersistentPriorityHashMap<>();
+        for (int order = 0; order < 10; order++) {
+            map.put(new CollidingKey(order), order);
+        }
+        map.put(new CollidingKey(3), 33);
+        Assert.assertEquals(33, (int) map.remove(new CollidingKey(3)));
+        Assert.assertNull(map.get(new CollidingKey(3)));
+        Assert.assertEquals(9, map.size());
+        for (int order = 9; order >= 0; order--) {
+            if (order != 3) {
+                Assert.assertEquals(order,
+                        (int) map.pollValueWithPriorityKey());
+            }
+        }
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testReaderSeesConsistentSnapshots() throws Exception {
+        PersistentPriorityHashMap<Integer, Integer> map =
+                new PersistentPriorityHashMap<>();
+        List<String> failures = Collections.synchronizedList(
+                new ArrayList<>());
+        Thread reader = new Thread(() -> {
+            for (int round = 0; round < 2000; round++) {
+                PersistentPriorityHashMap<Integer, Integer> snapshot =
+                        map.snapshot();
+                int count = 0;
+                for (Map.Entry<Integer, Integer> entry
+                        : snapshot.entrySet()) {
+                    if (!entry.getKey().equals(entry.getValue())) {
+                        failures.add("Mismatched entry " + entry);
+                    }
+                    count++;
+                }
+                if (count != snapshot.size()) {
+                    failures.add("Size " + snapshot.size()
+                            + " but iterated " + count);
+                }
+            }
+        });
+        reader.start();
+        for (int key = 0; key < 20000; key++) {
+            map.put(key, key);
+            if (key % 3 == 0) {
+                map.pollValueWithPriorityKey();
+            }
+        }
+        reader.join();
+        Assert.assertEquals(Collections.emptyList(), failures);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsReadOnly() throws Exception {
+        PersistentPriorityHashMap<Integer, Integer> map =
+                new PersistentPriorityHashMap<>();
+        map.put(1, 1);
+        map.snapshot().put(2, 2);
+    }
+
+    private static final class CollidingKey
+            implements Comparable<CollidingKey> {
+        private final int order;
+
+        private CollidingKey(int order) {
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(CollidingKey other) {
+            return Integer.compare(order, other.order);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey
+                    && ((CollidingKey) o).order == order;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ua.yandex.prioritymap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.*;
+
+public class PriorityHashMapSnapshotTest {
+
+    private static byte[] write(PriorityHashMap<Integer, String> map)
+            throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PriorityHashMapSnapshot.write(map, Channels.newChannel(output),
+                Serializers.INTEGER, Serializers.STRING);
+        return output.toByteArray();
+    }
+
+    private static PriorityHashMap<Integer, String> read(byte[] bytes)
+            throws IOException {
+        return PriorityHashMapSnapshot.read(
+                Channels.newChannel(new ByteArrayInputStream(bytes)),
+                Serializers.INTEGER, Serializers.STRING);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>(4);
+        Random random = new Random(5);
+        for (int step = 0; step < 50000; step++) {
+            map.put(random.nextInt(100000), "v" + step);
+        }
+        map.put(null, "null key");
+        map.put(-1, null);
+        PriorityHashMap<Integer, String> restored = read(write(map));
+        Assert.assertEquals(new HashMap<>(map),
+                new HashMap<>(restored));
+        Assert.assertEquals("null key", restored.get(null));
+        Assert.assertTrue(restored.containsKey(-1));
+        while (!map.isEmpty()) {
+            Assert.assertEquals(map.pollValueWithPriorityKey(),
+                    restored.pollValueWithPriorityKey());
+        }
+        Assert.assertTrue(restored.isEmpty());
+    }
+
+    @Test
+    public void testLargeValues() throws Exception {
+        char[] chars = new char[200000];
+        Arrays.fill(chars, 'y');
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>();
+        map.put(1, new String(chars));
+        map.put(2, "small");
+        map.put(3, new String(chars, 0, 70000));
+        PriorityHashMap<Integer, String> restored = read(write(map));
+        Assert.assertEquals(new HashMap<>(map),
+                new HashMap<>(restored));
+        Assert.assertEquals(70000, restored.pollValueWithPriorityKey()
+                .length());
+    }
+
+    @Test
+    public void testEmptyMap() throws Exception {
+        PriorityHashMap<Integer, String> restored =
+                read(write(new PriorityHashMap<>(0, 0.5f)));
+        Assert.assertTrue(restored.isEmpty());
+        restored.put(1, "a");
+        Assert.assertEquals("a", restored.get(1));
+    }
+
+    @Test
+    public void testCustomComparator() throws Exception {
+        Comparator<Map.Entry<Integer, String>> byValue =
+                PriorityHashMap.valuePriority(String::length);
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>(byValue);
+        for (int key = 0; key < 100; key++) {
+            map.put(key, new String(new char[(key * 37) % 101]));
+        }
+        PriorityHashMap<Integer, String> restored =
+                PriorityHashMapSnapshot.read(Channels.newChannel(
+                        new ByteArrayInputStream(write(map))),
+                        Serializers.INTEGER, Serializers.STRING, byValue);
+        while (!map.isEmpty()) {
+            Assert.assertEquals(map.pollValueWithPriorityKey(),
+                    restored.pollValueWithPriorityKey());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedSnapshot() throws Exception {
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>();
+        for (int key = 0; key < 100; key++) {
+            map.put(key, "v" + key);
+        }
+        byte[] bytes = write(map);
+        read(Arrays.copyOf(bytes, bytes.length - 3));
+    }
+
+    @Test(expected = IOException.class)
+    public void testForeignData() throws Exception {
+        read(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.*;
+import java.util.function.BiFunction;
 
 public class PriorityHashMapTest {
 
@@ -209,7 +210,7 @@ public class PriorityHashMapTest {
     }
 
     @Test
-    public void testEntrySetPosition() throws Exception {
+    public void testPriorityIteratorPosition() throws Exception {
         PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>(0);
         int size = 300;
         Random random = new Random();
@@ -217,21 +218,26 @@ public class PriorityHashMapTest {
             int key = random.nextInt();
             map.put(key, index + 1);
         }
-        Set<Map.Entry<Integer, Integer>> entrySet = map.entrySet();
+        Iterator<Map.Entry<Integer, Integer>> iterator =
+                map.priorityIterator();
         Map.Entry<Integer, Integer> previousEntry = null;
-        for (Map.Entry<Integer, Integer> nextEntry : entrySet) {
+        int count = 0;
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Integer> nextEntry = iterator.next();
             if (previousEntry != null) {
                 int comparison = nextEntry.getKey()
                         .compareTo(
                                 previousEntry.getKey());
-                Assert.assertTrue(comparison == 1);
+                Assert.assertTrue(comparison < 0);
             }
             previousEntry = nextEntry;
+            count++;
         }
+        Assert.assertEquals(map.size(), count);
     }
 
     @Test
-    public void testEntrySetNullKeyPosition() throws Exception {
+    public void testPriorityIteratorNullKeyPosition() throws Exception {
         PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>(0);
         int size = 10;
         Random random = new Random();
@@ -240,9 +246,69 @@ public class PriorityHashMapTest {
             map.put(key, index + 1);
         }
         map.put(null, null);
-        Set<Map.Entry<Integer, Integer>> entrySet = map.entrySet();
-        Iterator<Map.Entry<Integer, Integer>> iterator = entrySet.iterator();
-        Assert.assertNull(iterator.next().getKey());
+        Iterator<Map.Entry<Integer, Integer>> iterator =
+                map.priorityIterator();
+        Map.Entry<Integer, Integer> lastEntry = null;
+        while (iterator.hasNext()) {
+            lastEntry = iterator.next();
+        }
+        Assert.assertNull(lastEntry.getKey());
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testPriorityIteratorFailsFast() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>(0);
+        map.put(1, 1);
+        map.put(2, 2);
+        Iterator<Map.Entry<Integer, Integer>> iterator =
+                map.priorityIterator();
+        iterator.next();
+        map.put(3, 3);
+        iterator.next();
+    }
+
+    @Test
+    public void testViewsAreLive() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>(0);
+        Set<Integer> keys = map.keySet();
+        Collection<Integer> values = map.values();
+        Set<Map.Entry<Integer, Integer>> entries = map.entrySet();
+        map.put(1, 10);
+        map.put(2, 20);
+        Assert.assertEquals(2, keys.size());
+        Assert.assertTrue(keys.contains(2));
+        Assert.assertTrue(values.contains(20));
+        Assert.assertTrue(entries.contains(
+                new AbstractMap.SimpleEntry<>(1, 10)));
+        Assert.assertFalse(entries.contains(
+                new AbstractMap.SimpleEntry<>(1, 11)));
+        keys.remove(1);
+        Assert.assertFalse(map.containsKey(1));
+        Assert.assertEquals(1, values.size());
+    }
+
+    @Test
+    public void testIteratorRemove() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>(0);
+        int size = 300;
+        for (int index = 0; index < size; index++) {
+            map.put(index, index);
+        }
+        Iterator<Integer> iterator = map.values().iterator();
+        int visited = 0;
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 0) {
+                iterator.remove();
+            }
+            visited++;
+        }
+        Assert.assertEquals(size, visited);
+        Assert.assertEquals(size / 2, map.size());
+        for (int index = size; index > 0; index -= 2) {
+            Assert.assertEquals(index - 1,
+                    (int) map.pollValueWithPriorityKey());
+        }
+        Assert.assertTrue(map.isEmpty());
     }
 
     @Test
@@ -273,4 +339,824 @@ public class PriorityHashMapTest {
         }
         Assert.assertNull(map.pollValueWithPriorityKey());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPeekValueWithPriorityKeyWithoutNullKey() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>(0);
+        map.put(5, 50);
+        map.put(-3, -30);
+        map.put(12, 120);
+        Assert.assertEquals(120, (int) map.peekValueWithPriorityKey());
+        Assert.assertEquals(3, map.size());
+    }
+
+    @Test
+    public void testPollValueWithPriorityKeyUpdatesSize() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>(0);
+        int size = 300;
+        for (int index = 0; index < size; index++) {
+            map.put(index, index);
+        }
+        for (int index = size - 1; index >= 0; index--) {
+            Assert.assertEquals(index, (int) map.pollValueWithPriorityKey());
+            Assert.assertEquals(index, map.size());
+            Assert.assertFalse(map.containsKey(index));
+        }
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testPollValueWithPriorityKeyAfterRandomRemovals()
+            throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>(0);
+        Random random = new Random(42);
+        TreeSet<Integer> expectedKeys = new TreeSet<>();
+        int size = 1000;
+        for (int index = 0; index < size; index++) {
+            int key = random.nextInt(size);
+            map.put(key, key);
+            expectedKeys.add(key);
+        }
+        for (int index = 0; index < size / 2; index++) {
+            int key = random.nextInt(size);
+            map.remove(key);
+            expectedKeys.remove(key);
+        }
+        while (!expectedKeys.isEmpty()) {
+            int expectedKey = expectedKeys.pollLast();
+            Assert.assertEquals(expectedKey,
+                    (int) map.pollValueWithPriorityKey());
+        }
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testClearResetsPriority() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>(0);
+        map.put(10, 10);
+        map.clear();
+        Assert.assertNull(map.peekValueWithPriorityKey());
+        map.put(1, 1);
+        Assert.assertEquals(1, (int) map.pollValueWithPriorityKey());
+    }
+
+    @Test
+    public void testResizeKeepsEntries() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>(0);
+        map.put(-1, -1);
+        Map.Entry<Integer, Integer> firstEntry =
+                map.entrySet().iterator().next();
+        Map<Integer, Integer> expected = new HashMap<>();
+        expected.put(-1, -1);
+        Random random = new Random(11);
+        for (int step = 0; step < 20000; step++) {
+            int key = random.nextInt(5000);
+            if (random.nextInt(4) > 0) {
+                Assert.assertEquals(expected.put(key, step),
+                        map.put(key, step));
+            } else {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            }
+            if (step % 1000 == 0) {
+                Assert.assertEquals(expected.size(), map.size());
+                Assert.assertEquals(expected.keySet(), map.keySet());
+            }
+        }
+        for (int key = 0; key < 5000; key++) {
+            Assert.assertEquals(expected.get(key), map.get(key));
+        }
+        Assert.assertSame(firstEntry, findEntry(map, -1));
+    }
+
+    private static Map.Entry<Integer, Integer> findEntry(
+            Map<Integer, Integer> map, Integer key) {
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            if (key.equals(entry.getKey())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testMinValueHash() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>(3);
+        map.put(Integer.MIN_VALUE, 1);
+        map.put(Integer.MAX_VALUE, 2);
+        Assert.assertEquals(1, (int) map.get(Integer.MIN_VALUE));
+        Assert.assertEquals(2, (int) map.get(Integer.MAX_VALUE));
+        Assert.assertEquals(1, (int) map.remove(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void testCollidingKeys() throws Exception {
+        PriorityHashMap<CollidingKey, Integer> map = new PriorityHashMap<>();
+        int size = 2000;
+        for (int index = 0; index < size; index++) {
+            map.put(new CollidingKey(index), index);
+        }
+        map.put(null, -1);
+        Assert.assertEquals(size + 1, map.size());
+        for (int index = 0; index < size; index++) {
+            Assert.assertEquals(index, (int) map.get(new CollidingKey(index)));
+        }
+        for (int index = 0; index < size; index += 2) {
+            Assert.assertEquals(index,
+                    (int) map.remove(new CollidingKey(index)));
+        }
+        Assert.assertEquals(-1, (int) map.get(null));
+        Assert.assertFalse(map.containsKey(new CollidingKey(0)));
+        Assert.assertEquals(size / 2 + 1, map.keySet().size());
+        for (int index = size - 1; index > 0; index -= 2) {
+            Assert.assertEquals(index, (int) map.pollValueWithPriorityKey());
+        }
+        Assert.assertEquals(-1, (int) map.pollValueWithPriorityKey());
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testKeysEqualByComparisonOnly() throws Exception {
+        PriorityHashMap<CollidingKey, Integer> map = new PriorityHashMap<>();
+        int size = 100;
+        for (int index = 0; index < size; index++) {
+            map.put(new CollidingKey(0, index), index);
+        }
+        for (int index = 0; index < size; index++) {
+            Assert.assertEquals(index,
+                    (int) map.get(new CollidingKey(0, index)));
+        }
+        Iterator<CollidingKey> iterator = map.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().tag % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        for (int index = 0; index < size; index++) {
+            Assert.assertEquals(index % 2 == 1,
+                    map.containsKey(new CollidingKey(0, index)));
+        }
+    }
+
+    @Test
+    public void testStatisticsCountOperations() throws Exception {
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>(2);
+        map.setStatisticsEnabled(true);
+        for (int key = 0; key < 100; key++) {
+            map.put(key, "v" + key);
+        }
+        map.get(5);
+        map.peekValueWithPriorityKey();
+        map.pollValueWithPriorityKey();
+        map.pollValueWithPriorityKey();
+        PriorityHashMapStatistics statistics = map.getStatistics();
+        Assert.assertEquals(98, statistics.getSize());
+        Assert.assertEquals(100, statistics.getLookups());
+        Assert.assertTrue(statistics.getResizes() > 0);
+        Assert.assertEquals(2, statistics.getPolls());
+        Assert.assertEquals(1, statistics.getPeeks());
+        Assert.assertTrue(statistics.getAverageSiftStepsPerPoll() > 0);
+        int buckets = 0;
+        int entries = 0;
+        int[] histogram = statistics.getBucketSizeHistogram();
+        for (int bucketSize = 0; bucketSize < histogram.length;
+             bucketSize++) {
+            buckets += histogram[bucketSize];
+            entries += bucketSize * histogram[bucketSize];
+        }
+        Assert.assertEquals(statistics.getCapacity(), buckets);
+        Assert.assertEquals(98, entries);
+    }
+
+    @Test
+    public void testStatisticsDisabled() throws Exception {
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>();
+        map.put(1, "a");
+        map.get(1);
+        map.pollValueWithPriorityKey();
+        Assert.assertFalse(map.isStatisticsEnabled());
+        PriorityHashMapStatistics statistics = map.getStatistics();
+        Assert.assertEquals(0, statistics.getLookups());
+        Assert.assertEquals(0, statistics.getPolls());
+        Assert.assertEquals(16, statistics.getCapacity());
+    }
+
+    @Test
+    public void testStatisticsCountTreeBins() throws Exception {
+        PriorityHashMap<CollidingKey, Integer> map = new PriorityHashMap<>(64);
+        for (int order = 0; order < 20; order++) {
+            map.put(new CollidingKey(order), order);
+        }
+        PriorityHashMapStatistics statistics = map.getStatistics();
+        Assert.assertEquals(1, statistics.getTreeBins());
+        Assert.assertEquals(20, statistics.getLongestBucket());
+        Assert.assertEquals(1, statistics.getOccupiedBuckets());
+    }
+
+    @Test
+    public void testMonitorRegistration() throws Exception {
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>();
+        map.setStatisticsEnabled(true);
+        map.put(1, "a");
+        map.pollValueWithPriorityKey();
+        PriorityHashMapMonitor monitor = new PriorityHashMapMonitor(map);
+        javax.management.ObjectName name = monitor.register("test");
+        javax.management.MBeanServer server = java.lang.management
+                .ManagementFactory.getPlatformMBeanServer();
+        Assert.assertEquals(1L, server.getAttribute(name, "Polls"));
+        Assert.assertEquals(true,
+                server.getAttribute(name, "StatisticsEnabled"));
+        monitor.unregister();
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testMaximumSizeKeepsTopEntries() throws Exception {
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>();
+        List<Integer> evicted = new ArrayList<>();
+        map.setMaximumSize(3);
+        map.setEvictionListener((key, value) -> evicted.add(key));
+        int[] keys = {5, 1, 9, 3, 7, 2, 8};
+        for (int key : keys) {
+            map.put(key, "v" + key);
+        }
+        Assert.assertEquals(3, map.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(7, 8, 9)),
+                map.keySet());
+        Assert.assertEquals(Arrays.asList(1, 3, 2, 5), evicted);
+        Assert.assertEquals("v9", map.pollValueWithPriorityKey());
+        map.put(4, "v4");
+        Assert.assertEquals(3, map.size());
+        Assert.assertTrue(map.containsKey(4));
+    }
+
+    @Test
+    public void testMaximumSizeTrimsExistingEntries() throws Exception {
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>(0);
+        for (int key = 0; key < 100; key++) {
+            map.put(key, "v" + key);
+        }
+        List<Integer> evicted = new ArrayList<>();
+        map.setEvictionListener((key, value) -> evicted.add(key));
+        map.setMaximumSize(10);
+        Assert.assertEquals(10, map.size());
+        Assert.assertEquals(90, evicted.size());
+        for (int key = 0; key < 90; key++) {
+            Assert.assertEquals(Integer.valueOf(key), evicted.get(key));
+        }
+        map.remove(95);
+        map.put(null, "null");
+        Assert.assertEquals(10, map.size());
+        map.put(50, "v50");
+        Assert.assertFalse(map.containsKey(null));
+        map.setMaximumSize(Integer.MAX_VALUE);
+        map.put(1, "v1");
+        Assert.assertEquals(11, map.size());
+    }
+
+    @Test
+    public void testMaximumSizeWithTreeBins() throws Exception {
+        PriorityHashMap<CollidingKey, Integer> map = new PriorityHashMap<>(64);
+        map.setMaximumSize(12);
+        for (int order = 0; order < 40; order++) {
+            map.put(new CollidingKey(order), order);
+        }
+        Assert.assertEquals(12, map.size());
+        for (int order = 39; order >= 28; order--) {
+            Assert.assertEquals(Integer.valueOf(order),
+                    map.pollValueWithPriorityKey());
+        }
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testZeroMaximumSizeRejectsEverything() throws Exception {
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>(0);
+        map.setMaximumSize(0);
+        List<Integer> evicted = new ArrayList<>();
+        map.setEvictionListener((key, value) -> evicted.add(key));
+        map.put(1, "a");
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertEquals(Collections.singletonList(1), evicted);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMaximumSize() throws Exception {
+        new PriorityHashMap<Integer, String>().setMaximumSize(-1);
+    }
+
+    @Test
+    public void testSpliteratorSplitsEvenly() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+        for (int key = 0; key < 1001; key++) {
+            map.put(key, key);
+        }
+        Spliterator<Integer> suffix = map.keySet().spliterator();
+        Assert.assertTrue(suffix.hasCharacteristics(Spliterator.SIZED));
+        Assert.assertTrue(suffix.hasCharacteristics(Spliterator.SUBSIZED));
+        Assert.assertTrue(suffix.hasCharacteristics(Spliterator.DISTINCT));
+        Spliterator<Integer> prefix = suffix.trySplit();
+        Assert.assertEquals(500, prefix.estimateSize());
+        Assert.assertEquals(501, suffix.estimateSize());
+        Set<Integer> keys = new HashSet<>();
+        prefix.forEachRemaining(keys::add);
+        while (suffix.tryAdvance(keys::add)) {
+            Assert.assertTrue(keys.size() <= 1001);
+        }
+        Assert.assertEquals(new HashSet<>(map.keySet()), keys);
+    }
+
+    @Test
+    public void testParallelStreams() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+        long expectedSum = 0;
+        for (int key = 0; key < 100000; key++) {
+            map.put(key, 2 * key);
+            expectedSum += 2 * key;
+        }
+        Assert.assertEquals(expectedSum, map.values().parallelStream()
+                .mapToLong(Integer::longValue).sum());
+        Assert.assertEquals(100000, map.keySet().parallelStream()
+                .distinct().count());
+        Assert.assertEquals(99999, (int) map.entrySet().parallelStream()
+                .map(Map.Entry::getKey).max(Integer::compare).get());
+    }
+
+    @Test
+    public void testParallelBulkOperations() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+        for (int key = 0; key < 10000; key++) {
+            map.put(key, key);
+        }
+        map.replaceAll(100, (key, value) -> value + 1);
+        Assert.assertEquals(10000, (int) map.get(9999));
+        java.util.concurrent.atomic.LongAdder sum =
+                new java.util.concurrent.atomic.LongAdder();
+        map.forEach(100, (key, value) -> sum.add(value));
+        Assert.assertEquals(10000L * 10001 / 2, sum.sum());
+        Assert.assertEquals(Long.valueOf(10000L * 10001 / 2),
+                map.reduce(1, (key, value) -> (long) value, Long::sum));
+        Assert.assertEquals(Integer.valueOf(10000), map.reduce(
+                Long.MAX_VALUE, (key, value) -> value, Math::max));
+        Assert.assertNull(new PriorityHashMap<Integer, Integer>()
+                .reduce(1, (key, value) -> value, Math::max));
+        map.replaceAll((key, value) -> -value);
+        Assert.assertEquals(-1, (int) map.get(0));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testForEachDetectsModification() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+        map.put(1, 1);
+        map.put(2, 2);
+        map.forEach((key, value) -> map.remove(key));
+    }
+
+    @Test
+    public void testCustomComparator() throws Exception {
+        PriorityHashMap<String, Integer> map = new PriorityHashMap<>(
+                Map.Entry.comparingByKey(Comparator.reverseOrder()));
+        map.put("b", 2);
+        map.put("a", 1);
+        map.put("c", 3);
+        Assert.assertNotNull(map.comparator());
+        Assert.assertNull(new PriorityHashMap<String, Integer>().comparator());
+        Assert.assertEquals(1, (int) map.pollValueWithPriorityKey());
+        Assert.assertEquals(2, (int) map.pollValueWithPriorityKey());
+        Assert.assertEquals(3, (int) map.pollValueWithPriorityKey());
+    }
+
+    @Test
+    public void testValuePriorityRepositionsOnPut() throws Exception {
+        PriorityHashMap<String, Integer> map = new PriorityHashMap<>(
+                PriorityHashMap.valuePriority(value -> value));
+        for (int job = 0; job < 100; job++) {
+            map.put("job" + job, job);
+        }
+        map.put("job3", 1000);
+        map.put("job99", -1);
+        Assert.assertEquals(1000, (int) map.peekValueWithPriorityKey());
+        map.replaceAll((key, value) -> -value);
+        Assert.assertEquals(1, (int) map.pollValueWithPriorityKey());
+        Assert.assertEquals(0, (int) map.pollValueWithPriorityKey());
+        Assert.assertEquals(-1, (int) map.pollValueWithPriorityKey());
+        map.replaceAll(1, (key, value) -> value * value);
+        Assert.assertEquals(1000000, (int) map.pollValueWithPriorityKey());
+        Assert.assertEquals(98 * 98, (int) map.pollValueWithPriorityKey());
+    }
+
+    @Test
+    public void testUpdatePriority() throws Exception {
+        int[] priorities = new int[50];
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>(
+                PriorityHashMap.valuePriority(job -> priorities[job]));
+        for (int job = 0; job < priorities.length; job++) {
+            priorities[job] = job;
+            map.put(job, job);
+        }
+        priorities[10] = 100;
+        Assert.assertTrue(map.updatePriority(10));
+        priorities[49] = -5;
+        Assert.assertTrue(map.updatePriority(49));
+        Assert.assertFalse(map.updatePriority(50));
+        Assert.assertEquals(10, (int) map.pollValueWithPriorityKey());
+        for (int job = 48; job >= 0; job--) {
+            if (job != 10) {
+                Assert.assertEquals(job, (int) map.pollValueWithPriorityKey());
+            }
+        }
+        Assert.assertEquals(49, (int) map.pollValueWithPriorityKey());
+    }
+
+    @Test
+    public void testCustomComparatorWithMaximumSize() throws Exception {
+        PriorityHashMap<String, Integer> map = new PriorityHashMap<>(
+                PriorityHashMap.valuePriority(value -> value));
+        map.setMaximumSize(2);
+        map.put("a", 5);
+        map.put("b", 1);
+        map.put("b", 10);
+        map.put("c", 7);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("b", "c")),
+                map.keySet());
+    }
+
+    @Test
+    public void testPutAllIntoEmptyMap() throws Exception {
+        Map<Integer, Integer> source = new HashMap<>();
+        for (int key = 0; key < 1000; key++) {
+            source.put(key * 7919 % 1000, key);
+        }
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+        map.putAll(source);
+        Assert.assertEquals(source, new HashMap<>(map));
+        for (int key = 999; key >= 0; key--) {
+            Assert.assertEquals(source.get(key),
+                    map.pollValueWithPriorityKey());
+        }
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testPutAllFromPriorityHashMap() throws Exception {
+        PriorityHashMap<String, Integer> source = new PriorityHashMap<>(
+                PriorityHashMap.valuePriority(value -> value));
+        PriorityHashMap<String, Integer> map = new PriorityHashMap<>(
+                source.comparator());
+        for (int value = 0; value < 100; value++) {
+            source.put("key" + value, value * 37 % 100);
+        }
+        map.putAll(source);
+        for (int value = 99; value >= 0; value--) {
+            Assert.assertEquals(value, (int) map.pollValueWithPriorityKey());
+        }
+    }
+
+    @Test
+    public void testPutAllIntoNonEmptyMap() throws Exception {
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>();
+        map.put(5, "old");
+        map.put(50, "kept");
+        Map<Integer, String> source = new TreeMap<>();
+        for (int key = 0; key < 40; key++) {
+            source.put(key, "new" + key);
+        }
+        map.putAll(source);
+        Assert.assertEquals(41, map.size());
+        Assert.assertEquals("new5", map.get(5));
+        Assert.assertEquals("kept", map.pollValueWithPriorityKey());
+        for (int key = 39; key >= 0; key--) {
+            Assert.assertEquals("new" + key, map.pollValueWithPriorityKey());
+        }
+    }
+
+    @Test
+    public void testPutAllWithMaximumSize() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+        List<Integer> evicted = new ArrayList<>();
+        map.setMaximumSize(10);
+        map.setEvictionListener((key, value) -> evicted.add(key));
+        Map<Integer, Integer> source = new HashMap<>();
+        for (int key = 0; key < 30; key++) {
+            source.put(key, key);
+        }
+        map.putAll(source);
+        Assert.assertEquals(10, map.size());
+        Assert.assertEquals(20, evicted.size());
+        for (int key = 29; key >= 20; key--) {
+            Assert.assertEquals(key, (int) map.pollValueWithPriorityKey());
+        }
+    }
+
+    @Test
+    public void testOrderIndexMatchesTreeMap() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+        map.setOrderIndexEnabled(true);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(17);
+        for (int step = 0; step < 5000; step++) {
+            int key = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                map.put(key, step);
+                expected.put(key, step);
+            }
+        }
+        for (int step = 0; step < 100; step++) {
+            expected.remove(expected.lastKey());
+            map.pollValueWithPriorityKey();
+        }
+        Assert.assertEquals(expected.firstKey(), map.firstKey());
+        Assert.assertEquals(expected.lastKey(), map.lastKey());
+        for (int key = -1; key <= 500; key++) {
+            Assert.assertEquals(expected.ceilingKey(key), map.ceilingKey(key));
+            Assert.assertEquals(expected.floorKey(key), map.floorKey(key));
+        }
+        int rank = 0;
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            Assert.assertEquals(entry, map.entryAtRank(rank));
+            rank++;
+        }
+        Assert.assertEquals(new ArrayList<>(expected.subMap(100, 300)
+                        .entrySet()),
+                new ArrayList<>(map.subMap(100, 300).entrySet()));
+        Assert.assertEquals(new ArrayList<>(expected.headMap(250).keySet()),
+                new ArrayList<>(map.headMap(250).keySet()));
+        Assert.assertEquals(new ArrayList<>(expected.tailMap(250).keySet()),
+                new ArrayList<>(map.tailMap(250).keySet()));
+    }
+
+    @Test
+    public void testOrderIndexNullKeyIsLowest() throws Exception {
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>();
+        map.put(5, "five");
+        map.put(null, "null");
+        map.setOrderIndexEnabled(true);
+        map.put(3, "three");
+        Assert.assertNull(map.firstKey());
+        Assert.assertEquals("null", map.entryAtRank(0).getValue());
+        Assert.assertEquals("null", map.floorEntry(1).getValue());
+        Assert.assertEquals(Arrays.asList(null, 3),
+                new ArrayList<>(map.headMap(5).keySet()));
+        Assert.assertEquals("null", map.ceilingEntry(null).getValue());
+        Assert.assertEquals(3, (int) map.ceilingKey(1));
+        map.clear();
+        Assert.assertNull(map.ceilingEntry(0));
+    }
+
+    @Test
+    public void testOrderIndexFollowsTreeifiedBuckets() throws Exception {
+        PriorityHashMap<CollidingKey, Integer> map =
+                new PriorityHashMap<>(64);
+        map.setOrderIndexEnabled(true);
+        for (int order = 0; order < 20; order++) {
+            map.put(new CollidingKey(order), order);
+        }
+        for (int order = 0; order < 20; order += 2) {
+            map.remove(new CollidingKey(order));
+        }
+        for (int rank = 0; rank < 10; rank++) {
+            Assert.assertEquals(2 * rank + 1,
+                    (int) map.entryAtRank(rank).getValue());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOrderQueryWithoutIndex() throws Exception {
+        new PriorityHashMap<Integer, Integer>().firstKey();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testLastKeyOfEmptyMap() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+        map.setOrderIndexEnabled(true);
+        map.lastKey();
+    }
+
+    @Test
+    public void testDefaultMethodsMatchHashMap() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(3);
+        for (int step = 0; step < 5000; step++) {
+            Integer key = random.nextInt(100);
+            Integer value = random.nextInt(10);
+            if (value == 0) {
+                value = null;
+            }
+            Integer result = value;
+            BiFunction<Integer, Integer, Integer> remapping = (first,
+                    second) -> {
+                if (result == null) {
+                    return null;
+                }
+                return first + result;
+            };
+            switch (random.nextInt(8)) {
+                case 0:
+                    Assert.assertEquals(expected.putIfAbsent(key, value),
+                            map.putIfAbsent(key, value));
+                    break;
+                case 1:
+                    Assert.assertEquals(
+                            expected.computeIfAbsent(key, k -> result),
+                            map.computeIfAbsent(key, k -> result));
+                    break;
+                case 2:
+                    Assert.assertEquals(
+                            expected.computeIfPresent(key, remapping),
+                            map.computeIfPresent(key, remapping));
+                    break;
+                case 3:
+                    Assert.assertEquals(expected.compute(key, (k, old) ->
+                                    remapping.apply(k, old)),
+                            map.compute(key, (k, old) ->
+                                    remapping.apply(k, old)));
+                    break;
+                case 4:
+                    if (value != null) {
+                        Assert.assertEquals(
+                                expected.merge(key, value, remapping),
+                                map.merge(key, value, remapping));
+                    }
+                    break;
+                case 5:
+                    Assert.assertEquals(expected.replace(key, value),
+                            map.replace(key, value));
+                    break;
+                case 6:
+                    Assert.assertEquals(expected.remove(key, value),
+                            map.remove(key, value));
+                    break;
+                default:
+                    Assert.assertEquals(expected.getOrDefault(key, -1),
+                            map.getOrDefault(key, -1));
+                    break;
+            }
+        }
+        Assert.assertEquals(expected, new HashMap<>(map));
+        for (int key = 99; key >= 0; key--) {
+            if (expected.containsKey(key)) {
+                Assert.assertEquals(expected.get(key),
+                        map.pollValueWithPriorityKey());
+            }
+        }
+    }
+
+    @Test
+    public void testMergeRepositionsCounts() throws Exception {
+        PriorityHashMap<String, Integer> counts = new PriorityHashMap<>(
+                PriorityHashMap.valuePriority(count -> count));
+        String[] words = {"a", "b", "c", "b", "c", "c", "a", "c"};
+        for (String word : words) {
+            counts.merge(word, 1, Integer::sum);
+        }
+        Assert.assertEquals(4, (int) counts.pollValueWithPriorityKey());
+        Assert.assertEquals(2, (int) counts.pollValueWithPriorityKey());
+        Assert.assertEquals(2, (int) counts.pollValueWithPriorityKey());
+    }
+
+    @Test
+    public void testMergeProbesOnce() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+        map.put(1, 1);
+        map.setStatisticsEnabled(true);
+        map.merge(1, 1, Integer::sum);
+        map.compute(1, (key, value) -> value + 1);
+        map.computeIfAbsent(2, key -> 0);
+        Assert.assertEquals(3, map.getStatistics().getLookups());
+        Assert.assertEquals(3, (int) map.get(1));
+    }
+
+    @Test
+    public void testComputeIfAbsentWithMaximumSize() throws Exception {
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>();
+        map.setMaximumSize(2);
+        for (int key = 0; key < 5; key++) {
+            map.computeIfAbsent(key, String::valueOf);
+        }
+        Assert.assertEquals(new HashSet<>(Arrays.asList(3, 4)),
+                map.keySet());
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testComputeDetectsModification() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+        map.computeIfAbsent(1, key -> map.put(2, 2));
+    }
+
+    @Test
+    public void testNodeRecyclingMatchesHashMap() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+        map.setNodeRecyclingEnabled(true);
+        map.setMaximumSize(300);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(11);
+        for (int step = 0; step < 20000; step++) {
+            int key = random.nextInt(1000);
+            int operation = random.nextInt(4);
+            if (operation == 0) {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            } else if (operation == 1 && !expected.isEmpty()) {
+                Assert.assertEquals(expected.pollLastEntry().getValue(),
+                        map.pollValueWithPriorityKey());
+            } else {
+                map.put(key, step);
+                expected.put(key, step);
+                if (expected.size() > 300) {
+                    expected.pollFirstEntry();
+                }
+            }
+            if (step % 5000 == 0) {
+                map.clear();
+                expected.clear();
+            }
+        }
+        Assert.assertEquals(expected, new HashMap<>(map));
+    }
+
+    @Test
+    public void testNodeRecyclingReusesNodes() throws Exception {
+        PriorityHashMap<Integer, String> map = new PriorityHashMap<>();
+        map.setNodeRecyclingEnabled(true);
+        map.put(1, "a");
+        Map.Entry<Integer, String> entry = map.entrySet().iterator().next();
+        Assert.assertEquals("a", map.remove(1));
+        Assert.assertNull(entry.getValue());
+        map.put(2, "b");
+        Assert.assertSame(entry, map.entrySet().iterator().next());
+        Assert.assertEquals(2, (int) entry.getKey());
+    }
+
+    @Test
+    public void testClearWithNodeRecyclingKeepsCapacity() throws Exception {
+        PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+        map.setNodeRecyclingEnabled(true);
+        for (int key = 0; key < 1000; key++) {
+            map.put(key, key);
+        }
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.get(5));
+        Assert.assertTrue(map.getStatistics().getCapacity() >= 1024);
+        map.put(5, 5);
+        Assert.assertEquals(5, (int) map.pollValueWithPriorityKey());
+    }
+
+    private static final class CollidingKey
+            implements Comparable<CollidingKey> {
+        private final int order;
+        private final int tag;
+
+        private CollidingKey(int order) {
+            this(order, 0);
+        }
+
+        private CollidingKey(int order, int tag) {
+            this.order = order;
+            this.tag = tag;
+        }
+
+        @Override
+        public int compareTo(CollidingKey other) {
+            return Integer.compare(order, other.order);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey
+                    && ((CollidingKey) o).order == order
+                    && ((CollidingKey) o).tag == tag;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    @Test
+    public void testSetMaximumSizeKeepsIteratorConsistent() throws Exception {
+        for (int size = 1; size < 600; size++) {
+            PriorityHashMap<Integer, Integer> map = new PriorityHashMap<>();
+            for (int key = 0; key < size; key++) {
+                map.put(key, key);
+            }
+            Iterator<Integer> iterator = map.keySet().iterator();
+            Set<Integer> seen = new HashSet<>();
+            int visited = 0;
+            for (int step = 0; step < size / 2; step++) {
+                seen.add(iterator.next());
+                visited++;
+            }
+            map.setMaximumSize(Integer.MAX_VALUE - 1);
+            while (iterator.hasNext()) {
+                seen.add(iterator.next());
+                visited++;
+            }
+            Assert.assertEquals(size, visited);
+            Assert.assertEquals(size, seen.size());
+        }
+    }
+}